@@ -1,10 +1,18 @@
 package com.github.throwable.mdc4spring;
 
+import com.github.throwable.mdc4spring.format.MDCValueFormatters;
+import com.github.throwable.mdc4spring.jfr.MDCFlightRecorder;
 import com.github.throwable.mdc4spring.loggers.LoggerMDCAdapter;
 import com.github.throwable.mdc4spring.loggers.LoggingSubsystemResolver;
+import com.github.throwable.mdc4spring.metrics.MDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * An MDC implementation. Additionally, it implements an AutoCloseable interface to use in try-with-resources block.
@@ -12,17 +20,63 @@ import java.util.HashMap;
 public class CloseableMDC implements AutoCloseable, MDC {
 
     private static final ThreadLocal<CloseableMDC> currentMdc = new ThreadLocal<>();
+    // Sample value drawn before any MDC exists, adopted by the next root MDC
+    private static final ThreadLocal<double[]> pendingSampleValue = new ThreadLocal<>();
+    // Marks parameters whose values are stored unboxed in primitive slots
+    private static final Object PRIMITIVE_VALUE = new Object();
+    private static final byte LONG_VALUE = 0;
+    private static final byte INT_VALUE = 1;
+    private static final byte BOOLEAN_VALUE = 2;
+    private static final byte DOUBLE_VALUE = 3;
     private static LoggerMDCAdapter loggerMDCAdapter = LoggingSubsystemResolver.resolveMDCAdapter();
+    private static volatile MDCLimits limits = MDCLimits.fromSystemProperties();
+    private static volatile MDCRetention retention = MDCRetention.fromSystemProperties();
+    private static final Set<String> reportedLimits = ConcurrentHashMap.newKeySet();
+    // Compared by identity: returned by applyLimits() when the parameter must not be set
+    private static final String REJECTED = new String("");
+    // Marks parameters that were not defined before a change recorded in undo log
+    private static final Object ABSENT = new Object();
+    // Returned by findFormattedValue() when no MDC of the execution flow publishes the parameter
+    private static final Object UNPUBLISHED = new Object();
+    private static final ThreadLocal<UndoLog> undoLogs = ThreadLocal.withInitial(UndoLog::new);
 
     private final CloseableMDC parent;
+    private final CloseableMDC root;
     private final String namePrefix;
+    private final int depth;
     private HashMap<String, Object> mdcData;
+    // Formatted values of the parameters, as they were published to logger MDC adapter
+    private HashMap<String, String> formattedValues;
+    // Values currently published to logger MDC adapter by all MDCs of the execution flow, by full parameter name.
+    // Maintained in root MDC only.
+    private HashMap<String, String> publishedValues;
+    // Primitive parameter slots, created on demand. Slots are reused by name and never shrink.
+    private String[] primitiveNames;
+    private byte[] primitiveTypes;
+    private long[] primitiveBits;
+    private int primitiveCount;
+    // Lengths of published values when total length is limited, created on demand
+    private HashMap<String, Integer> valueLengths;
+    // Total length of values published by all MDCs of the execution flow, maintained in root MDC only
+    private int totalLength;
+    // Sampling decision value in [0, 1) of the execution flow, drawn on demand and maintained in root MDC only
+    private double sampleValue = -1;
+    // MDCScopeEvent, typed as Object so that JFR classes are not required
+    private Object scopeEvent;
+    // Number of frames joined to this MDC and the undo log of current thread that records their changes
+    private int joinedFrames;
+    private UndoLog undoLog;
 
 
     private CloseableMDC(CloseableMDC parent, String namePrefix) {
         this.parent = parent;
         this.namePrefix = namePrefix;
+        this.depth = parent != null ? parent.depth + 1 : 1;
+        this.root = parent != null ? parent.root : this;
         mdcData = new HashMap<>();
+        formattedValues = new HashMap<>();
+        if (parent == null)
+            publishedValues = new HashMap<>();
     }
 
     static CloseableMDC current() throws IllegalStateException {
@@ -43,6 +97,55 @@ public class CloseableMDC implements AutoCloseable, MDC {
         return mdc;
     }
 
+    static Map<String, Object> snapshot() {
+        CloseableMDC mdc = currentMdc.get();
+        if (mdc == null)
+            return Collections.emptyMap();
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        mdc.collectParams(params);
+        return params;
+    }
+
+    static void forEachPublishedValue(BiConsumer<String, String> action) {
+        CloseableMDC mdc = currentMdc.get();
+        if (mdc == null)
+            return;
+        for (Map.Entry<String, String> entry : mdc.root.publishedValues.entrySet())
+            action.accept(entry.getKey(), entry.getValue());
+    }
+
+    private void collectParams(Map<String, Object> params) {
+        if (parent != null)
+            parent.collectParams(params);
+        for (Map.Entry<String, Object> entry : mdcData.entrySet())
+            params.put(namePrefix + entry.getKey(), unwrap(entry.getKey(), entry.getValue()));
+    }
+
+    static double sampleValue() {
+        CloseableMDC mdc = currentMdc.get();
+        if (mdc != null) {
+            CloseableMDC rootMdc = mdc.root;
+            if (rootMdc.sampleValue < 0)
+                rootMdc.sampleValue = ThreadLocalRandom.current().nextDouble();
+            return rootMdc.sampleValue;
+        }
+        // Parameters are usually evaluated before the MDC they belong to is created
+        double[] pending = pendingSampleValue.get();
+        if (pending == null) {
+            pending = new double[] {-1};
+            pendingSampleValue.set(pending);
+        }
+        if (pending[0] < 0)
+            pending[0] = ThreadLocalRandom.current().nextDouble();
+        return pending[0];
+    }
+
+    static void discardPendingSampleValue() {
+        double[] pending = pendingSampleValue.get();
+        if (pending != null)
+            pending[0] = -1;
+    }
+
     static void setLoggerMDCAdapter(LoggerMDCAdapter mdcAdapter) {
         loggerMDCAdapter = mdcAdapter;
     }
@@ -51,6 +154,22 @@ public class CloseableMDC implements AutoCloseable, MDC {
         return loggerMDCAdapter;
     }
 
+    static void setLimits(MDCLimits mdcLimits) {
+        limits = mdcLimits != null ? mdcLimits : MDCLimits.UNLIMITED;
+    }
+
+    static MDCLimits getLimits() {
+        return limits;
+    }
+
+    static void setRetention(MDCRetention mdcRetention) {
+        retention = mdcRetention != null ? mdcRetention : MDCRetention.STRONG;
+    }
+
+    static MDCRetention getRetention() {
+        return retention;
+    }
+
     static CloseableMDC create() {
         return create("");
     }
@@ -63,15 +182,103 @@ public class CloseableMDC implements AutoCloseable, MDC {
             newKeyPrefix = keyPrefix + namespace + ".";
         else
             newKeyPrefix = keyPrefix;
-        CloseableMDC mdc = new CloseableMDC(current, newKeyPrefix);
+        return open(current, newKeyPrefix);
+    }
+
+    static CloseableMDC create(MDCTemplate template, String overrideName1, Object overrideValue1,
+                               String overrideName2, Object overrideValue2)
+    {
+        CloseableMDC current = currentMdc.get();
+        MDCTemplate.Keys keys = template.keys(current != null ? current.namePrefix : "");
+        CloseableMDC mdc = open(current, keys.namePrefix);
+        String[] names = template.names;
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i];
+            if (name.equals(overrideName1) || name.equals(overrideName2))
+                continue;
+            String formattedValue = mdc.applyLimits(name, template.renderedValues[i]);
+            if (formattedValue == REJECTED)
+                continue;
+            mdc.mdcData.put(name, template.values[i]);
+            mdc.formattedValues.put(name, formattedValue);
+            mdc.publish(keys.fullNames[i], formattedValue);
+        }
+        if (overrideName1 != null)
+            mdc.put(overrideName1, overrideValue1);
+        if (overrideName2 != null)
+            mdc.put(overrideName2, overrideValue2);
+        return mdc;
+    }
+
+    static CloseableMDC join() throws IllegalStateException {
+        CloseableMDC mdc = current();
+        if (mdc.undoLog == null)
+            mdc.undoLog = undoLogs.get();
+        mdc.undoLog.pushFrame(mdc);
+        mdc.joinedFrames++;
+        return mdc;
+    }
+
+    private static CloseableMDC open(CloseableMDC current, String namePrefix) {
+        CloseableMDC mdc = new CloseableMDC(current, namePrefix);
+        if (current == null) {
+            double[] pending = pendingSampleValue.get();
+            if (pending != null && pending[0] >= 0) {
+                mdc.sampleValue = pending[0];
+                pending[0] = -1;
+            }
+        }
+        mdc.scopeEvent = MDCFlightRecorder.beginScope();
         currentMdc.set(mdc);
         return mdc;
     }
 
+    static <T> void forEach(String namespace, Map<String, Object> parameters, Iterable<T> items,
+                            BiConsumer<? super T, MDC> binder, Consumer<? super T> consumer)
+    {
+        try (CloseableMDC mdc = create(namespace)) {
+            if (parameters != null)
+                parameters.forEach(mdc::put);
+            ItemBinding binding = new ItemBinding(mdc);
+            ArrayList<String> unboundNames = new ArrayList<>();
+            for (T item : items) {
+                binding.boundNames.clear();
+                binder.accept(item, binding);
+                // Parameters bound for previous item (or set by its consumer) that were not rebound for this one
+                for (String name : mdc.mdcData.keySet()) {
+                    if (!binding.boundNames.contains(name))
+                        unboundNames.add(name);
+                }
+                for (String name : unboundNames) {
+                    if (parameters == null || !parameters.containsKey(name))
+                        mdc.remove(name);
+                    else if (!Objects.equals(mdc.get(name), parameters.get(name)))
+                        mdc.put(name, parameters.get(name));
+                }
+                unboundNames.clear();
+                consumer.accept(item);
+            }
+        }
+    }
+
     @SuppressWarnings("resource")
     @Override
     public void close() {
         if (mdcData == null) throw new IllegalStateException("MDC is closed");
+        if (joinedFrames > 0) {
+            // Closing a joined frame: undo its changes and keep the MDC open
+            undoLog.popFrame();
+            if (--joinedFrames == 0)
+                undoLog = null;
+            return;
+        }
+        final MDCMetrics metrics = MDCMetricsHolder.getMetrics();
+        if (metrics.isEnabled())
+            metrics.recordScope(depth, mdcData.size());
+        if (scopeEvent != null) {
+            MDCFlightRecorder.endScope(scopeEvent, namePrefix, depth, mdcData.size());
+            scopeEvent = null;
+        }
         for (String name : new ArrayList<>(mdcData.keySet())) {
             remove(name);
         }
@@ -80,6 +287,7 @@ public class CloseableMDC implements AutoCloseable, MDC {
         else
             currentMdc.remove();
         mdcData = null;
+        formattedValues = null;
     }
 
     @Override
@@ -91,44 +299,504 @@ public class CloseableMDC implements AutoCloseable, MDC {
     public CloseableMDC put(String name, Object value) {
         if (mdcData == null) throw new IllegalStateException("MDC is closed");
         if (name == null) throw new IllegalArgumentException("Name must not be null");
-        mdcData.put(name, value);
-        loggerMDCAdapter.put(namePrefix + name, value != null ? value.toString() : null);
+        String formattedValue = applyLimits(name, MDCValueFormatters.format(value));
+        if (formattedValue == REJECTED)
+            return this;
+        if (joinedFrames > 0)
+            undoLog.record(this, name);
+        mdcData.put(name, retain(value, formattedValue));
+        formattedValues.put(name, formattedValue);
+        publish(namePrefix + name, formattedValue);
+        return this;
+    }
+
+    @Override
+    public CloseableMDC put(String name, long value) {
+        return putPrimitive(name, LONG_VALUE, value, MDCValueFormatters.formatLong(value));
+    }
+
+    @Override
+    public CloseableMDC put(String name, int value) {
+        return putPrimitive(name, INT_VALUE, value, MDCValueFormatters.formatInt(value));
+    }
+
+    @Override
+    public CloseableMDC put(String name, boolean value) {
+        return putPrimitive(name, BOOLEAN_VALUE, value ? 1 : 0, MDCValueFormatters.formatBoolean(value));
+    }
+
+    @Override
+    public CloseableMDC put(String name, double value) {
+        return putPrimitive(name, DOUBLE_VALUE, Double.doubleToRawLongBits(value), MDCValueFormatters.formatDouble(value));
+    }
+
+    private CloseableMDC putPrimitive(String name, byte type, long bits, String formattedValue) {
+        if (mdcData == null) throw new IllegalStateException("MDC is closed");
+        if (name == null) throw new IllegalArgumentException("Name must not be null");
+        formattedValue = applyLimits(name, formattedValue);
+        if (formattedValue == REJECTED)
+            return this;
+        if (joinedFrames > 0)
+            undoLog.record(this, name);
+        setPrimitiveSlot(name, type, bits);
+        mdcData.put(name, PRIMITIVE_VALUE);
+        formattedValues.put(name, formattedValue);
+        publish(namePrefix + name, formattedValue);
+        return this;
+    }
+
+    private void setPrimitiveSlot(String name, byte type, long bits) {
+        int slot = primitiveSlot(name);
+        if (slot < 0) {
+            if (primitiveNames == null) {
+                primitiveNames = new String[4];
+                primitiveTypes = new byte[4];
+                primitiveBits = new long[4];
+            } else if (primitiveCount == primitiveNames.length) {
+                primitiveNames = Arrays.copyOf(primitiveNames, primitiveCount * 2);
+                primitiveTypes = Arrays.copyOf(primitiveTypes, primitiveCount * 2);
+                primitiveBits = Arrays.copyOf(primitiveBits, primitiveCount * 2);
+            }
+            slot = primitiveCount++;
+            primitiveNames[slot] = name;
+        }
+        primitiveTypes[slot] = type;
+        primitiveBits[slot] = bits;
+    }
+
+    private int primitiveSlot(String name) {
+        for (int i = 0; i < primitiveCount; i++) {
+            if (primitiveNames[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    private Object boxPrimitive(String name) {
+        int slot = primitiveSlot(name);
+        long bits = primitiveBits[slot];
+        switch (primitiveTypes[slot]) {
+            case LONG_VALUE: return bits;
+            case INT_VALUE: return (int) bits;
+            case BOOLEAN_VALUE: return bits != 0;
+            default: return Double.longBitsToDouble(bits);
+        }
+    }
+
+    @Override
+    public <T> CloseableMDC put(MDCKey<T> key, T value) {
+        if (mdcData == null) throw new IllegalStateException("MDC is closed");
+        if (key == null) throw new IllegalArgumentException("Key must not be null");
+        String formattedValue = applyLimits(key.getName(), key.format(value));
+        if (formattedValue == REJECTED)
+            return this;
+        if (joinedFrames > 0)
+            undoLog.record(this, key.getName());
+        mdcData.put(key.getName(), retain(value, formattedValue));
+        formattedValues.put(key.getName(), formattedValue);
+        publish(key.fullName(namePrefix), formattedValue);
         return this;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(MDCKey<T> key) {
+        if (key == null) throw new IllegalArgumentException("Key must not be null");
+        return (T) get(key.getName());
+    }
+
     @Override
     public Object get(String name) {
         if (mdcData == null) throw new IllegalStateException("MDC is closed");
         if (name == null) throw new IllegalArgumentException("Name must not be null");
-        return mdcData.get(name);
+        return unwrap(name, mdcData.get(name));
+    }
+
+    /**
+     * Stop recording changes of the frame obtained with {@link MDC#join()}. Changes made from now on are kept
+     * when the frame is closed, and the parameters they overwrite are no longer restored. Changes made before
+     * are undone on close as usual.
+     * @return this MDC
+     * @throws IllegalStateException if this MDC is not joined
+     */
+    public CloseableMDC stopRecording() {
+        if (joinedFrames == 0) throw new IllegalStateException("MDC is not joined");
+        undoLog.stopRecording(this);
+        return this;
     }
 
     @Override
     public CloseableMDC remove(String name) {
         if (mdcData == null) throw new IllegalStateException("MDC is closed");
         if (name == null) throw new IllegalArgumentException("Name must not be null");
-        mdcData.remove(name);
-        loggerMDCAdapter.remove(namePrefix + name);
-        if (getParent() != null)
-            getParent().restore(namePrefix + name);
+        if (joinedFrames > 0 && mdcData.containsKey(name))
+            undoLog.record(this, name);
+        removeParam(name);
         return this;
     }
 
+    private void removeParam(String name) {
+        String fullName = namePrefix + name;
+        // Child MDC may overwrite a parent's MDC parameter, so the parent's value must be published back
+        Object inheritedValue = parent != null ? parent.findFormattedValue(fullName) : UNPUBLISHED;
+        if (inheritedValue == UNPUBLISHED)
+            unpublish(fullName);
+        else
+            publish(fullName, (String) inheritedValue);
+        mdcData.remove(name);
+        formattedValues.remove(name);
+        if (valueLengths != null) {
+            Integer length = valueLengths.remove(name);
+            if (length != null)
+                root.totalLength -= length;
+        }
+    }
+
+    /**
+     * Bring back the state of a parameter recorded in undo log.
+     */
+    private void undo(String name, Object value, String formattedValue,
+                      byte primitiveType, long primitiveBits)
+    {
+        if (value == ABSENT) {
+            removeParam(name);
+            return;
+        }
+        if (value == PRIMITIVE_VALUE)
+            setPrimitiveSlot(name, primitiveType, primitiveBits);
+        mdcData.put(name, value);
+        formattedValues.put(name, formattedValue);
+        if (valueLengths != null) {
+            int length = formattedValue != null ? formattedValue.length() : 0;
+            Integer previousLength = valueLengths.put(name, length);
+            root.totalLength += length - (previousLength != null ? previousLength : 0);
+        }
+        publish(namePrefix + name, formattedValue);
+    }
+
+    private static Object retain(Object value, String formattedValue) {
+        final MDCRetention retention = CloseableMDC.retention;
+        if (retention == MDCRetention.STRONG || value == null || value instanceof String || value instanceof Number ||
+                value instanceof Boolean || value instanceof Character || value instanceof Enum)
+            return value;
+        return new RetainedValue(retention == MDCRetention.WEAK ? new WeakReference<>(value) : null, formattedValue);
+    }
+
+    private Object unwrap(String name, Object value) {
+        if (value == PRIMITIVE_VALUE)
+            return boxPrimitive(name);
+        if (value instanceof RetainedValue)
+            return ((RetainedValue) value).get();
+        return value;
+    }
+
+    /**
+     * Parameter value kept according to MDCRetention other than STRONG.
+     */
+    private static final class RetainedValue {
+        private final WeakReference<Object> reference;
+        private final String formattedValue;
+
+        private RetainedValue(WeakReference<Object> reference, String formattedValue) {
+            this.reference = reference;
+            this.formattedValue = formattedValue;
+        }
+
+        private Object get() {
+            Object value = reference != null ? reference.get() : null;
+            return value != null ? value : formattedValue;
+        }
+    }
+
+    /**
+     * Check the parameter against current limits.
+     * @param name parameter name
+     * @param formattedValue formatted parameter value
+     * @return formatted value to publish, possibly truncated, or REJECTED if the parameter must not be set
+     */
+    private String applyLimits(String name, String formattedValue) {
+        final MDCLimits limits = CloseableMDC.limits;
+        if (limits.isUnlimited())
+            return formattedValue;
+        if (limits.getMaxScopeParams() > 0 && mdcData.size() >= limits.getMaxScopeParams() &&
+                !mdcData.containsKey(name))
+        {
+            limitExceeded(MDCLimits.SCOPE_PARAMS_LIMIT, namePrefix + name);
+            return REJECTED;
+        }
+        if (formattedValue != null && limits.getMaxValueLength() > 0 &&
+                formattedValue.length() > limits.getMaxValueLength())
+        {
+            limitExceeded(MDCLimits.VALUE_LENGTH_LIMIT, namePrefix + name);
+            formattedValue = truncate(formattedValue, limits);
+        }
+        if (limits.getMaxTotalLength() > 0) {
+            int length = formattedValue != null ? formattedValue.length() : 0;
+            Integer previousLength = valueLengths != null ? valueLengths.get(name) : null;
+            int newTotalLength = root.totalLength + length - (previousLength != null ? previousLength : 0);
+            if (newTotalLength > limits.getMaxTotalLength()) {
+                limitExceeded(MDCLimits.TOTAL_LENGTH_LIMIT, namePrefix + name);
+                return REJECTED;
+            }
+            if (valueLengths == null)
+                valueLengths = new HashMap<>();
+            valueLengths.put(name, length);
+            root.totalLength = newTotalLength;
+        }
+        return formattedValue;
+    }
+
+    private static String truncate(String formattedValue, MDCLimits limits) {
+        if (formattedValue == null || limits.getMaxValueLength() == 0 ||
+                formattedValue.length() <= limits.getMaxValueLength())
+            return formattedValue;
+        return formattedValue.substring(0, limits.getMaxValueLength()) + MDCLimits.TRUNCATION_MARKER;
+    }
+
+    private static void limitExceeded(String limit, String fullName) {
+        MDCMetricsHolder.getMetrics().recordLimitExceeded(limit);
+        if (reportedLimits.add(limit))
+            System.err.println("MDC4Spring: " + limit + " limit exceeded by MDC parameter '" + fullName +
+                    "', current limits: " + limits + ". Further occurrences are not reported.");
+    }
+
+    /**
+     * A view of the batch scope passed to item binder. Keeps track of parameters bound for current item
+     * and publishes to logger MDC adapter only the values that changed since previous item.
+     */
+    private static class ItemBinding implements MDC {
+        private final CloseableMDC mdc;
+        private final HashSet<String> boundNames = new HashSet<>();
+
+        private ItemBinding(CloseableMDC mdc) {
+            this.mdc = mdc;
+        }
+
+        @Override
+        public MDC getParent() {
+            return mdc.getParent();
+        }
+
+        @Override
+        public MDC put(String name, Object value) {
+            if (name == null) throw new IllegalArgumentException("Name must not be null");
+            boundNames.add(name);
+            if (!mdc.mdcData.containsKey(name) || !Objects.equals(mdc.get(name), value))
+                mdc.put(name, value);
+            return this;
+        }
+
+        @Override
+        public <T> MDC put(MDCKey<T> key, T value) {
+            if (key == null) throw new IllegalArgumentException("Key must not be null");
+            boundNames.add(key.getName());
+            if (!mdc.mdcData.containsKey(key.getName()) || !Objects.equals(mdc.get(key.getName()), value))
+                mdc.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Object get(String name) {
+            return mdc.get(name);
+        }
+
+        @Override
+        public MDC remove(String name) {
+            boundNames.remove(name);
+            mdc.remove(name);
+            return this;
+        }
+    }
+
+    /**
+     * Publish the value to logger MDC adapter unless the same value is already published under the name
+     * by this execution flow.
+     * @param fullName full parameter's name with prefix
+     * @param formattedValue formatted value to publish
+     */
+    private void publish(String fullName, String formattedValue) {
+        HashMap<String, String> publishedValues = root.publishedValues;
+        String publishedValue = publishedValues.get(fullName);
+        if ((publishedValue != null || publishedValues.containsKey(fullName)) &&
+                Objects.equals(publishedValue, formattedValue))
+            return;
+        publishedValues.put(fullName, formattedValue);
+        loggerMDCAdapter.put(fullName, formattedValue);
+    }
+
+    private void unpublish(String fullName) {
+        root.publishedValues.remove(fullName);
+        loggerMDCAdapter.remove(fullName);
+    }
+
+    /**
+     * Find the formatted value of the parameter defined by the nearest MDC of this MDC and its parents.
+     * @param fullName full parameter's name with prefix
+     * @return formatted value or UNPUBLISHED if the parameter is not defined
+     */
+    private Object findFormattedValue(String fullName) {
+        for (CloseableMDC mdc = this; mdc != null; mdc = mdc.parent) {
+            if (!fullName.startsWith(mdc.namePrefix))
+                break;
+            String name = mdc.namePrefix.isEmpty() ? fullName : fullName.substring(mdc.namePrefix.length());
+            String value = mdc.formattedValues.get(name);
+            if (value != null || mdc.formattedValues.containsKey(name))
+                return value;
+        }
+        return UNPUBLISHED;
+    }
+
     /**
-     * Child MDC may overwrite a parent's MDC parameter. So when it removes any of its params we must ensure that
-     * the original value will be restored.
-     * @param nameWithPrefix full parameter's name with prefix
+     * Per-thread log of parameter changes made while MDCs are joined. Each joined frame marks the log position
+     * where it started, and closing it undoes the changes recorded since in reverse order.
+     * A frame may stop recording: further changes of its MDC are then kept on close, and the recorded entries
+     * they overwrite are not undone. Such changes are still recorded by an outer recording frame of the same MDC.
+     * Arrays are reused by all frames of the thread, so recording changes does not allocate once they have grown.
      */
-    private void restore(String nameWithPrefix) {
-        if (nameWithPrefix.startsWith(this.namePrefix)) {
-            String name = nameWithPrefix.substring(this.namePrefix.length());
-            if (mdcData.containsKey(name)) {
-                final Object value = mdcData.get(name);
-                loggerMDCAdapter.put(nameWithPrefix, value != null ? value.toString() : null);
-            } else {
-                if (getParent() != null)
-                    getParent().restore(nameWithPrefix);
+    private static final class UndoLog {
+        private CloseableMDC[] mdcs = new CloseableMDC[16];
+        private String[] names = new String[16];
+        private Object[] values = new Object[16];
+        private String[] formattedValues = new String[16];
+        private byte[] primitiveTypes = new byte[16];
+        private long[] primitiveBits = new long[16];
+        // Entries overwritten after their frame stopped recording
+        private boolean[] overwritten = new boolean[16];
+        private int size;
+        private int[] frameMarks = new int[8];
+        // Log position where the frame stopped recording, or -1 if it is recording
+        private int[] frameEnds = new int[8];
+        private CloseableMDC[] frameOwners = new CloseableMDC[8];
+        private int frameCount;
+
+        private void pushFrame(CloseableMDC mdc) {
+            if (frameCount == frameMarks.length) {
+                frameMarks = Arrays.copyOf(frameMarks, frameCount * 2);
+                frameEnds = Arrays.copyOf(frameEnds, frameCount * 2);
+                frameOwners = Arrays.copyOf(frameOwners, frameCount * 2);
+            }
+            frameMarks[frameCount] = size;
+            frameEnds[frameCount] = -1;
+            frameOwners[frameCount++] = mdc;
+        }
+
+        private void stopRecording(CloseableMDC mdc) {
+            for (int f = frameCount - 1; f >= 0; f--) {
+                if (frameOwners[f] == mdc) {
+                    if (frameEnds[f] < 0)
+                        frameEnds[f] = size;
+                    return;
+                }
+            }
+        }
+
+        private void record(CloseableMDC mdc, String name) {
+            // The change belongs to the innermost recording frame of the MDC.
+            // Frames above it that stopped recording keep the change.
+            int origin = -1;
+            for (int f = frameCount - 1; f >= 0; f--) {
+                if (frameOwners[f] != mdc)
+                    continue;
+                if (frameEnds[f] < 0) {
+                    if (origin >= 0)
+                        // The recording frame must get back the state the overwritten entry would have restored
+                        appendCopy(origin);
+                    else
+                        append(mdc, name);
+                    return;
+                }
+                int frameOrigin = -1;
+                for (int i = frameMarks[f]; i < frameEnds[f]; i++) {
+                    if (mdcs[i] == mdc && !overwritten[i] && names[i].equals(name)) {
+                        overwritten[i] = true;
+                        if (frameOrigin < 0)
+                            frameOrigin = i;
+                    }
+                }
+                if (frameOrigin >= 0)
+                    origin = frameOrigin;
+            }
+        }
+
+        private void append(CloseableMDC mdc, String name) {
+            ensureCapacity();
+            Object value = mdc.mdcData.get(name);
+            if (value == null && !mdc.mdcData.containsKey(name))
+                value = ABSENT;
+            if (value == PRIMITIVE_VALUE) {
+                int slot = mdc.primitiveSlot(name);
+                primitiveTypes[size] = mdc.primitiveTypes[slot];
+                primitiveBits[size] = mdc.primitiveBits[slot];
+            }
+            mdcs[size] = mdc;
+            names[size] = name;
+            values[size] = value;
+            formattedValues[size] = mdc.formattedValues.get(name);
+            overwritten[size] = false;
+            size++;
+        }
+
+        private void appendCopy(int i) {
+            ensureCapacity();
+            mdcs[size] = mdcs[i];
+            names[size] = names[i];
+            values[size] = values[i];
+            formattedValues[size] = formattedValues[i];
+            primitiveTypes[size] = primitiveTypes[i];
+            primitiveBits[size] = primitiveBits[i];
+            overwritten[size] = false;
+            size++;
+        }
+
+        private void ensureCapacity() {
+            if (size == names.length) {
+                mdcs = Arrays.copyOf(mdcs, size * 2);
+                names = Arrays.copyOf(names, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+                formattedValues = Arrays.copyOf(formattedValues, size * 2);
+                primitiveTypes = Arrays.copyOf(primitiveTypes, size * 2);
+                primitiveBits = Arrays.copyOf(primitiveBits, size * 2);
+                overwritten = Arrays.copyOf(overwritten, size * 2);
+            }
+        }
+
+        private void popFrame() {
+            int mark = frameMarks[--frameCount];
+            int end = frameEnds[frameCount] >= 0 ? frameEnds[frameCount] : size;
+            CloseableMDC owner = frameOwners[frameCount];
+            frameOwners[frameCount] = null;
+            int kept = mark;
+            for (int i = size - 1; i >= mark; i--) {
+                if (mdcs[i] == owner && i < end) {
+                    if (!overwritten[i])
+                        owner.undo(names[i], values[i], formattedValues[i], primitiveTypes[i], primitiveBits[i]);
+                } else {
+                    kept++;
+                }
+            }
+            if (kept > mark) {
+                // Rare: changes recorded inside this frame for outer frames belong to them
+                int j = mark;
+                for (int i = mark; i < size; i++) {
+                    if (mdcs[i] != owner || i >= end) {
+                        mdcs[j] = mdcs[i];
+                        names[j] = names[i];
+                        values[j] = values[i];
+                        formattedValues[j] = formattedValues[i];
+                        primitiveTypes[j] = primitiveTypes[i];
+                        primitiveBits[j] = primitiveBits[i];
+                        overwritten[j] = overwritten[i];
+                        j++;
+                    }
+                }
+            }
+            for (int i = kept; i < size; i++) {
+                mdcs[i] = null;
+                names[i] = null;
+                values[i] = null;
+                formattedValues[i] = null;
             }
+            size = kept;
         }
     }
 }
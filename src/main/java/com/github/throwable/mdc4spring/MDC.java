@@ -2,6 +2,10 @@ package com.github.throwable.mdc4spring;
 
 import com.github.throwable.mdc4spring.loggers.LoggerMDCAdapter;
 
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
 /**
  * A basic class to manage MDC programmatically.
  * Initially an execution flow must open a new MDC using MDC.create() method in try-with-resources statement.
@@ -59,6 +63,39 @@ public interface MDC {
         return CloseableMDC.getLoggerMDCAdapter();
     }
 
+    /**
+     * Set limits of MDC parameters.
+     * @param limits new limits, null to remove all the limits
+     */
+    static void setLimits(MDCLimits limits) {
+        CloseableMDC.setLimits(limits);
+    }
+
+    /**
+     * Get current limits of MDC parameters.
+     * @return current limits
+     */
+    static MDCLimits getLimits() {
+        return CloseableMDC.getLimits();
+    }
+
+    /**
+     * Set how parameter values are kept in MDC after they were formatted for the logging system.
+     * Applies to parameters set afterwards.
+     * @param retention new retention mode, null to restore the default STRONG mode
+     */
+    static void setRetention(MDCRetention retention) {
+        CloseableMDC.setRetention(retention);
+    }
+
+    /**
+     * Get current retention mode of MDC parameter values.
+     * @return current retention mode
+     */
+    static MDCRetention getRetention() {
+        return CloseableMDC.getRetention();
+    }
+
     /**
      * Check if MDC was defined at current execution scope.
      * @return true if MDC was defined, false otherwise
@@ -67,6 +104,46 @@ public interface MDC {
         return CloseableMDC.hasCurrent();
     }
 
+    /**
+     * Get all parameters visible in current execution scope by their full names (including namespace prefixes).
+     * Parameters defined in nested MDCs override the ones of their parents.
+     * @return parameter values by full name or empty map if no MDC defined at current execution scope
+     */
+    static Map<String, Object> snapshot() {
+        return CloseableMDC.snapshot();
+    }
+
+    /**
+     * Iterate over parameters of current execution flow as they were published to the logger MDC, i.e. formatted
+     * and truncated according to {@link MDCLimits}. Parameters that were not published are skipped.
+     * The action must not modify the MDC.
+     * @param action consumer of full parameter names and published values
+     */
+    static void forEachPublishedValue(BiConsumer<String, String> action) {
+        CloseableMDC.forEachPublishedValue(action);
+    }
+
+    /**
+     * Decide if a sampled parameter should be included in current execution flow.
+     * The decision is taken once per root MDC: all log lines of the same execution flow consistently
+     * include or omit parameters sampled with the same rate.
+     * If no MDC is defined yet the decision applies to the next root MDC created in current thread.
+     * @param rate fraction of execution flows to include the parameter in, from 0 (never) to 1 (always)
+     * @return true if the parameter should be included
+     */
+    static boolean isSampled(double rate) {
+        return rate >= 1 || (rate > 0 && CloseableMDC.sampleValue() < rate);
+    }
+
+    /**
+     * Discard the sampling decision taken while no MDC was defined, if no root MDC has adopted it yet.
+     * Call it when the execution flow that took the decision finishes without creating an MDC, so that the next
+     * unrelated flow in current thread is sampled independently.
+     */
+    static void discardPendingSampleValue() {
+        CloseableMDC.discardPendingSampleValue();
+    }
+
     /**
      * Define new MDC (root or nested). This method must be used with try-with-resources statement to ensure its correct cleanup.
      * <pre>
@@ -80,6 +157,26 @@ public interface MDC {
         return CloseableMDC.create();
     }
 
+    /**
+     * Join current MDC instead of defining a nested one. Parameters put to or removed from current MDC
+     * until the returned resource is closed get back their previous values on close, as if they were
+     * defined in a nested MDC, but without creating it.
+     * This method must be used with try-with-resources statement to ensure its correct cleanup.
+     * <pre>
+     * try (CloseableMDC mdc = MDC.join()) {
+     *      mdc.put("param1", "value1");
+     * }
+     * // param1 has its previous value (if any) here
+     * </pre>
+     * Unlike a nested MDC the joined one shares its scope with the caller: <code>getParent()</code>
+     * and <code>root()</code> return the caller's MDC relatives, and scope limits are shared.
+     * @return current MDC as a closeable resource
+     * @throws IllegalStateException if no MDC was defined at current execution scope
+     */
+    static CloseableMDC join() throws IllegalStateException {
+        return CloseableMDC.join();
+    }
+
     /**
      * Define new MDC (root or nested) using namespace prefix. All parameters defined inside this MDC will have
      * prefix specified in namespace.
@@ -108,6 +205,18 @@ public interface MDC {
         current().put(name, value);
     }
 
+    /**
+     * Set typed parameter value in closest MDC. The method is equivalent to <code>MDC.current().put(key, value)</code>.
+     * @param key parameter's key
+     * @param value parameter's value
+     * @param <T> parameter's value type
+     * @throws IllegalArgumentException if parameter key is null
+     * @throws IllegalStateException if no MDC defined at current execution scope.
+     */
+    static <T> void param(MDCKey<T> key, T value) throws IllegalArgumentException, IllegalStateException {
+        current().put(key, value);
+    }
+
     /**
      * Set parameter value in root MDC. The method is equivalent to <code>MDC.root().put(name, value)</code>.
      * @param name parameter's name
@@ -157,6 +266,27 @@ public interface MDC {
     }
 
 
+    /**
+     * Process items in a single new MDC that is shared across all the iterations. Before processing an item
+     * the binder sets its per-item parameters, and only the parameters whose values changed since previous item
+     * are published to the logging system. Parameters that were not bound again for an item are removed.
+     * <p>
+     * Sample usage:
+     * <pre>
+     * MDC.forEach(orders,
+     *         (order, mdc) -&gt; mdc.put("orderId", order.getId()),
+     *         order -&gt; processOrder(order));
+     * </pre>
+     * @param items items to process
+     * @param binder sets MDC parameters of an item
+     * @param consumer processes an item
+     * @param <T> item type
+     */
+    static <T> void forEach(Iterable<T> items, BiConsumer<? super T, MDC> binder, Consumer<? super T> consumer) {
+        CloseableMDC.forEach("", null, items, binder, consumer);
+    }
+
+
     /**
      * If current MDC is a nested one return its direct parent.
      * @return parent MDC or null if current MDC is a root
@@ -173,13 +303,133 @@ public interface MDC {
     MDC put(String name, Object value) throws IllegalArgumentException;
 
     /**
-     * Get parameter's value.
+     * Set typed parameter's value. The value is converted to string with the key's formatter.
+     * The default implementation delegates to {@link #put(String, Object)}.
+     * @param key parameter's key
+     * @param value parameter's value
+     * @param <T> parameter's value type
+     * @throws IllegalArgumentException if parameter's key is null
+     * @return current MDC
+     */
+    default <T> MDC put(MDCKey<T> key, T value) throws IllegalArgumentException {
+        if (key == null) throw new IllegalArgumentException("Key must not be null");
+        return put(key.getName(), value);
+    }
+
+    /**
+     * Set parameter's <code>long</code> value. The value is kept unboxed in MDC.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, long value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>int</code> value. The value is kept unboxed in MDC.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, int value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>boolean</code> value. The value is kept unboxed in MDC.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, boolean value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>double</code> value. The value is kept unboxed in MDC.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, double value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>char</code> value.
+     * Prevents the value from being widened to <code>int</code> by overload resolution.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, char value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>float</code> value.
+     * Prevents the value from being widened to <code>double</code> by overload resolution.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, float value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>byte</code> value.
+     * Prevents the value from being widened to <code>int</code> by overload resolution.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, byte value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Set parameter's <code>short</code> value.
+     * Prevents the value from being widened to <code>int</code> by overload resolution.
+     * @param name parameter's name
+     * @param value parameter's value
+     * @throws IllegalArgumentException if parameter's name is null
+     * @return current MDC
+     */
+    default MDC put(String name, short value) throws IllegalArgumentException {
+        return put(name, (Object) value);
+    }
+
+    /**
+     * Get parameter's value. Depending on {@link MDCRetention} it may return the formatted value instead
+     * of the original one.
      * @param name parameter's name
      * @throws IllegalArgumentException if parameter's name is null
      * @return parameter value
      */
     Object get(String name) throws IllegalArgumentException;
 
+    /**
+     * Get typed parameter's value. The default implementation delegates to {@link #get(String)}.
+     * @param key parameter's key
+     * @param <T> parameter's value type
+     * @throws IllegalArgumentException if parameter's key is null
+     * @return parameter value
+     */
+    @SuppressWarnings("unchecked")
+    default <T> T get(MDCKey<T> key) throws IllegalArgumentException {
+        if (key == null) throw new IllegalArgumentException("Key must not be null");
+        return (T) get(key.getName());
+    }
+
     /**
      * Remove parameter from MDC.
      * @param name parameter's name
@@ -3,6 +3,8 @@ package com.github.throwable.mdc4spring;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 /**
@@ -71,4 +73,17 @@ public class MDCInvocationBuilder {
             return task.call();
         }
     }
+
+    /**
+     * Creates new MDC and processes all the items inside it, rebinding per-item parameters in place.
+     * Parameters set by this builder are shared by all the items.
+     * @param items items to process
+     * @param binder sets MDC parameters of an item
+     * @param consumer processes an item
+     * @param <T> item type
+     * @see MDC#forEach(Iterable, BiConsumer, Consumer)
+     */
+    public <T> void forEach(Iterable<T> items, BiConsumer<? super T, MDC> binder, Consumer<? super T> consumer) {
+        CloseableMDC.forEach(namespace, parameters, items, binder, consumer);
+    }
 }
@@ -0,0 +1,89 @@
+package com.github.throwable.mdc4spring;
+
+import com.github.throwable.mdc4spring.format.MDCValueFormatters;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Typed MDC parameter key meant to be declared as a constant. The key carries an interned parameter name,
+ * a value formatter and caches the full parameter names (with namespace prefix) it was used with,
+ * so that repeated puts in the same namespace do not concatenate strings.
+ * <p>
+ * Sample usage:
+ * <pre>
+ * private static final MDCKey&lt;Order&gt; ORDER = MDCKey.of("order", order -&gt; order.getId());
+ * ...
+ * MDC.current().put(ORDER, order);
+ * </pre>
+ * @param <T> parameter value type
+ */
+public final class MDCKey<T> {
+    // Keys are usually used in a few namespaces only: further prefixes are not cached
+    private static final int MAX_CACHED_PREFIXES = 32;
+
+    private final String name;
+    private final Function<? super T, String> formatter;
+    private final ConcurrentHashMap<String, String> fullNames = new ConcurrentHashMap<>();
+
+    private MDCKey(String name, Function<? super T, String> formatter) {
+        this.name = name.intern();
+        this.formatter = formatter;
+    }
+
+    /**
+     * Create a key whose values are formatted with a formatter registered for their type.
+     * @see MDCValueFormatters
+     * @param name parameter name
+     * @param <T> parameter value type
+     * @return new key
+     * @throws IllegalArgumentException if parameter name is null
+     */
+    public static <T> MDCKey<T> of(String name) throws IllegalArgumentException {
+        return of(name, MDCValueFormatters::format);
+    }
+
+    /**
+     * Create a key with custom value formatter.
+     * @param name parameter name
+     * @param formatter converts non-null parameter values to strings passed to the logging system
+     * @param <T> parameter value type
+     * @return new key
+     * @throws IllegalArgumentException if parameter name or formatter is null
+     */
+    public static <T> MDCKey<T> of(String name, Function<? super T, String> formatter) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException("Name must not be null");
+        if (formatter == null) throw new IllegalArgumentException("Formatter must not be null");
+        return new MDCKey<>(name, formatter);
+    }
+
+    /**
+     * @return parameter name
+     */
+    public String getName() {
+        return name;
+    }
+
+    String format(Object value) {
+        @SuppressWarnings("unchecked")
+        final T typedValue = (T) value;
+        return typedValue != null ? formatter.apply(typedValue) : null;
+    }
+
+    String fullName(String namePrefix) {
+        if (namePrefix.isEmpty())
+            return name;
+        String fullName = fullNames.get(namePrefix);
+        if (fullName == null) {
+            fullName = namePrefix + name;
+            if (fullNames.size() < MAX_CACHED_PREFIXES)
+                fullNames.putIfAbsent(namePrefix, fullName);
+        }
+        return fullName;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.throwable.mdc4spring;
+
+/**
+ * Limits that protect logging system from oversized MDC. A zero or negative limit value means no limit.
+ * <ul>
+ *     <li>Values longer than <code>maxValueLength</code> are truncated and marked with {@link #TRUNCATION_MARKER}.</li>
+ *     <li>New parameters are not set in MDC that already has <code>maxScopeParams</code> parameters.</li>
+ *     <li>Parameters are not set if the total length of all values defined by current execution flow would
+ *     exceed <code>maxTotalLength</code>.</li>
+ * </ul>
+ * Every time a limit is exceeded it is recorded in metrics, and a warning is printed for the first time.
+ * Default limits are read from system properties. Use {@link MDC#setLimits(MDCLimits)} to change them.
+ */
+public final class MDCLimits {
+    public static final String MAX_VALUE_LENGTH_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.maxValueLength";
+    public static final String MAX_SCOPE_PARAMS_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.maxScopeParams";
+    public static final String MAX_TOTAL_LENGTH_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.maxTotalLength";
+
+    /** Name of the value length limit */
+    public static final String VALUE_LENGTH_LIMIT = "valueLength";
+    /** Name of the parameters per scope limit */
+    public static final String SCOPE_PARAMS_LIMIT = "scopeParams";
+    /** Name of the total values length limit */
+    public static final String TOTAL_LENGTH_LIMIT = "totalLength";
+
+    /** Appended to truncated values */
+    public static final String TRUNCATION_MARKER = "...[truncated]";
+
+    public static final MDCLimits UNLIMITED = new MDCLimits(0, 0, 0);
+
+    private final int maxValueLength;
+    private final int maxScopeParams;
+    private final int maxTotalLength;
+
+    /**
+     * @param maxValueLength maximum length of a value
+     * @param maxScopeParams maximum number of parameters in a single MDC
+     * @param maxTotalLength maximum total length of all values defined by an execution flow
+     */
+    public MDCLimits(int maxValueLength, int maxScopeParams, int maxTotalLength) {
+        this.maxValueLength = Math.max(maxValueLength, 0);
+        this.maxScopeParams = Math.max(maxScopeParams, 0);
+        this.maxTotalLength = Math.max(maxTotalLength, 0);
+    }
+
+    /**
+     * @return limits defined by system properties, unlimited by default
+     */
+    public static MDCLimits fromSystemProperties() {
+        return new MDCLimits(
+                Integer.getInteger(MAX_VALUE_LENGTH_SYSTEM_PROPERTY, 0),
+                Integer.getInteger(MAX_SCOPE_PARAMS_SYSTEM_PROPERTY, 0),
+                Integer.getInteger(MAX_TOTAL_LENGTH_SYSTEM_PROPERTY, 0));
+    }
+
+    public int getMaxValueLength() {
+        return maxValueLength;
+    }
+
+    public int getMaxScopeParams() {
+        return maxScopeParams;
+    }
+
+    public int getMaxTotalLength() {
+        return maxTotalLength;
+    }
+
+    boolean isUnlimited() {
+        return maxValueLength == 0 && maxScopeParams == 0 && maxTotalLength == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MDCLimits{maxValueLength=" + maxValueLength + ", maxScopeParams=" + maxScopeParams +
+                ", maxTotalLength=" + maxTotalLength + '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.throwable.mdc4spring;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Defines how MDC keeps parameter values after they were formatted for the logging system.
+ * Strings, numbers, booleans, characters and enums are always kept as is.
+ * @see MDC#setRetention(MDCRetention)
+ */
+public enum MDCRetention {
+    /**
+     * Keep a strong reference to the value. {@link MDC#get(String)} returns the original value.
+     */
+    STRONG,
+    /**
+     * Keep only the formatted value. {@link MDC#get(String)} returns the formatted string.
+     */
+    FORMATTED,
+    /**
+     * Keep a weak reference to the value and its formatted representation. {@link MDC#get(String)} returns
+     * the original value while it is reachable elsewhere, and the formatted string after it was garbage collected.
+     */
+    WEAK;
+
+    public static final String RETENTION_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.retention";
+
+    /**
+     * @return retention defined by system property, STRONG by default or if the property value is not valid
+     */
+    public static MDCRetention fromSystemProperties() {
+        String retention = System.getProperty(RETENTION_SYSTEM_PROPERTY);
+        if (retention == null)
+            return STRONG;
+        try {
+            return valueOf(retention.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("MDC4Spring: invalid value '" + retention + "' of system property " +
+                    RETENTION_SYSTEM_PROPERTY + ", expected one of " + Arrays.toString(values()) + ". Using " + STRONG);
+            return STRONG;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.throwable.mdc4spring;
+
+import com.github.throwable.mdc4spring.format.MDCValueFormatters;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Immutable reusable definition of MDC with constant parameters. Unlike {@link MDCInvocationBuilder} the template
+ * is built once and may be shared between threads. Parameter names are validated and prefixed with namespace,
+ * and parameter values are formatted ahead of time, so opening a new MDC only copies them.
+ * <p>
+ * Sample usage:
+ * <pre>
+ * private static final MDCTemplate IMPORT_MDC = MDCTemplate.builder("import")
+ *         .param("component", "importer")
+ *         .param("tenant", tenant)
+ *         .build();
+ * ...
+ * try (CloseableMDC mdc = IMPORT_MDC.open("recordId", record.getId())) {
+ *     ...
+ * }
+ * </pre>
+ */
+public final class MDCTemplate {
+    final String[] names;
+    final Object[] values;
+    final String[] renderedValues;
+    private final String namespace;
+    private final Keys rootKeys;
+    // Full parameter names for templates opened inside other MDCs, by parent MDC name prefix
+    private final ConcurrentHashMap<String, Keys> nestedKeys = new ConcurrentHashMap<>();
+
+    private MDCTemplate(String namespace, Map<String, Object> parameters) {
+        this.namespace = namespace;
+        this.names = parameters.keySet().toArray(new String[0]);
+        this.values = parameters.values().toArray();
+        this.renderedValues = new String[values.length];
+        for (int i = 0; i < values.length; i++)
+            renderedValues[i] = MDCValueFormatters.format(values[i]);
+        this.rootKeys = new Keys("", namespace, names);
+    }
+
+    /**
+     * Start building a template of MDC without namespace.
+     * @return template builder
+     */
+    public static Builder builder() {
+        return new Builder("");
+    }
+
+    /**
+     * Start building a template of MDC with namespace.
+     * @param namespace namespace of MDC
+     * @return template builder
+     */
+    public static Builder builder(String namespace) {
+        return new Builder(namespace != null ? namespace : "");
+    }
+
+    /**
+     * Define new MDC with template parameters.
+     * This method must be used with try-with-resources statement to ensure its correct cleanup.
+     * @return closeable MDC resource
+     */
+    public CloseableMDC open() {
+        return CloseableMDC.create(this, null, null, null, null);
+    }
+
+    /**
+     * Define new MDC with template parameters and one per-call parameter.
+     * @param name per-call parameter name, overrides template parameter with the same name
+     * @param value per-call parameter value
+     * @return closeable MDC resource
+     * @throws IllegalArgumentException if parameter name is null
+     */
+    public CloseableMDC open(String name, Object value) throws IllegalArgumentException {
+        if (name == null) throw new IllegalArgumentException("Name must not be null");
+        return CloseableMDC.create(this, name, value, null, null);
+    }
+
+    /**
+     * Define new MDC with template parameters and two per-call parameters.
+     * @param name1 first per-call parameter name, overrides template parameter with the same name
+     * @param value1 first per-call parameter value
+     * @param name2 second per-call parameter name, overrides template parameter with the same name
+     * @param value2 second per-call parameter value
+     * @return closeable MDC resource
+     * @throws IllegalArgumentException if any parameter name is null
+     */
+    public CloseableMDC open(String name1, Object value1, String name2, Object value2)
+            throws IllegalArgumentException
+    {
+        if (name1 == null || name2 == null) throw new IllegalArgumentException("Name must not be null");
+        return CloseableMDC.create(this, name1, value1, name2, value2);
+    }
+
+    /**
+     * Creates new MDC with template parameters and runs a task inside it.
+     * @param task task to run
+     */
+    public void run(Runnable task) {
+        try (CloseableMDC ignored = open()) {
+            task.run();
+        }
+    }
+
+    /**
+     * Creates new MDC with template parameters and runs inside it a task that returns some value.
+     * @param task task to run
+     * @param <T> return type
+     * @return a value returned by task
+     */
+    public <T> T run(Supplier<T> task) {
+        try (CloseableMDC ignored = open()) {
+            return task.get();
+        }
+    }
+
+    /**
+     * Creates new MDC with template parameters and runs a callable task inside it.
+     * @param task task to run
+     * @param <T> return type
+     * @return a value returned by callable task
+     * @throws Exception exception thrown by callable task
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        try (CloseableMDC ignored = open()) {
+            return task.call();
+        }
+    }
+
+    Keys keys(String parentNamePrefix) {
+        if (parentNamePrefix.isEmpty())
+            return rootKeys;
+        Keys keys = nestedKeys.get(parentNamePrefix);
+        if (keys == null)
+            keys = nestedKeys.computeIfAbsent(parentNamePrefix, prefix -> new Keys(prefix, namespace, names));
+        return keys;
+    }
+
+    /**
+     * MDC name prefix and full parameter names of the template opened under a particular parent MDC.
+     */
+    static final class Keys {
+        final String namePrefix;
+        final String[] fullNames;
+
+        private Keys(String parentNamePrefix, String namespace, String[] names) {
+            this.namePrefix = namespace.isEmpty() ? parentNamePrefix : parentNamePrefix + namespace + ".";
+            this.fullNames = new String[names.length];
+            for (int i = 0; i < names.length; i++)
+                fullNames[i] = namePrefix + names[i];
+        }
+    }
+
+    /**
+     * Builds new immutable MDC template
+     */
+    public static final class Builder {
+        private final String namespace;
+        private final LinkedHashMap<String, Object> parameters = new LinkedHashMap<>();
+
+        private Builder(String namespace) {
+            this.namespace = namespace;
+        }
+
+        /**
+         * Add constant parameter to the template.
+         * @param name parameter's name
+         * @param value parameter's value
+         * @throws IllegalArgumentException if parameter name is null
+         * @return this builder instance
+         */
+        public Builder param(String name, Object value) throws IllegalArgumentException {
+            if (name == null) throw new IllegalArgumentException("Name must not be null");
+            parameters.put(name, value);
+            return this;
+        }
+
+        /**
+         * @return new template instance
+         */
+        public MDCTemplate build() {
+            return new MDCTemplate(namespace, new LinkedHashMap<>(parameters));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.throwable.mdc4spring.anno;
+
+/**
+ * Defines how long the evaluated value of a bean-level parameter is reused.
+ * @see MDCParam#cache()
+ */
+public enum CachePolicy {
+    /**
+     * Evaluate the expression on every method invocation.
+     */
+    NONE,
+    /**
+     * Evaluate the expression once per bean instance.
+     */
+    INSTANCE,
+    /**
+     * Evaluate the expression once per bean instance and re-evaluate it when {@link MDCParam#cacheTtlMillis()} expires.
+     */
+    TTL
+}
@@ -0,0 +1,21 @@
+package com.github.throwable.mdc4spring.anno;
+
+/**
+ * Defines how collection, map and array parameter values are rendered in MDC.
+ * @see MDCParam#summary()
+ */
+public enum CollectionSummary {
+    /**
+     * Render all the elements.
+     */
+    FULL,
+    /**
+     * Render the number of elements only.
+     */
+    SIZE,
+    /**
+     * Render first {@link MDCParam#maxElements()} elements, optionally projected to their
+     * {@link MDCParam#elementProperty()}.
+     */
+    FIRST
+}
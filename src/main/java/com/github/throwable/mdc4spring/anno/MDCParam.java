@@ -85,4 +85,68 @@ public @interface MDCParam {
      * @return Expression to evaluate
      */
     String eval() default "";
+
+    /**
+     * Defines how the value is rendered when it is a collection, a map or an array.
+     * Other values are not affected. Maps are treated as collections of their entries.
+     * <pre>
+     * public void importOrders({@literal @}MDCParam(summary = CollectionSummary.FIRST, maxElements = 3,
+     *                                      elementProperty = "id") List&lt;Order&gt; orders)
+     * </pre>
+     * @return Summary mode, by default all the elements are rendered
+     */
+    CollectionSummary summary() default CollectionSummary.FULL;
+
+    /**
+     * Maximum number of elements rendered with {@link CollectionSummary#FIRST} summary.
+     * @return Maximum number of rendered elements
+     */
+    int maxElements() default 10;
+
+    /**
+     * Property (getter or field) of elements rendered with {@link CollectionSummary#FIRST} summary
+     * instead of the elements themselves.
+     * @return Element property name
+     */
+    String elementProperty() default "";
+
+    /**
+     * Fraction of execution flows that include the parameter, from 0 (never) to 1 (always).
+     * The decision is taken once per root MDC, so all log lines of the same execution flow consistently
+     * include or omit the parameter. Expressions of omitted parameters are not evaluated.
+     * <pre>
+     * {@literal @}MDCParam(name = "cart.contents", eval = "#cart.describe()", sampleRate = 0.01)
+     * </pre>
+     * @return Sample rate, by default the parameter is always included
+     */
+    double sampleRate() default 1.0;
+
+    /**
+     * Condition that includes the parameter (optional). It is evaluated before the parameter expression
+     * in the same context: argument value as <code>#root</code> object for argument annotations,
+     * local bean and method arguments for method-level annotations, local bean for bean-level annotations.
+     * Conditions that fail to evaluate are not met.
+     * <pre>
+     * {@literal @}MDCParam(condition = "#this != null") String tenantId
+     * </pre>
+     * @return Condition expression, by default the parameter is always included
+     */
+    String condition() default "";
+
+    /**
+     * Defines if the value of a bean-level parameter is reused between method invocations instead of being evaluated
+     * each time. Useful for expressions reading bean properties that do not change after startup.
+     * Ignored for method-level and argument parameters. Failed evaluations are not cached.
+     * <pre>
+     * {@literal @}MDCParam(name = "region", eval = "region", cache = CachePolicy.INSTANCE)
+     * </pre>
+     * @return Cache policy, by default the value is evaluated on every invocation
+     */
+    CachePolicy cache() default CachePolicy.NONE;
+
+    /**
+     * Time to live of values cached with {@link CachePolicy#TTL} policy.
+     * @return Time to live in milliseconds
+     */
+    long cacheTtlMillis() default 60000;
 }
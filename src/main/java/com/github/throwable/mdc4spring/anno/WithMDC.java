@@ -42,4 +42,17 @@ public @interface WithMDC {
      */
     @AliasFor("name")
     String value() default "";
+
+    /**
+     * Condition that enables the MDC scope (optional). It is evaluated before any parameter and has access
+     * to the same context as method-level <code>{@literal @}MDCParam</code> expressions: local bean as
+     * <code>#root</code> object and method arguments as <code>#argumentName</code> variables.
+     * When the condition is not met the method is invoked as is: no MDC is created and no parameter
+     * is evaluated. Conditions that fail to evaluate are not met.
+     * <pre>
+     * {@literal @}WithMDC(condition = "#order.priority == T(Priority).HIGH")
+     * </pre>
+     * @return Condition expression, by default the scope is always created
+     */
+    String condition() default "";
 }
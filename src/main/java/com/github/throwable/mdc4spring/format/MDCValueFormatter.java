@@ -0,0 +1,16 @@
+package com.github.throwable.mdc4spring.format;
+
+/**
+ * Converts MDC parameter values of a particular type to strings passed to the logging system.
+ * Formatters are registered per type with {@link MDCValueFormatters#register(Class, MDCValueFormatter)}.
+ * @param <T> type of formatted values
+ */
+@FunctionalInterface
+public interface MDCValueFormatter<T> {
+    /**
+     * Format parameter value.
+     * @param value parameter value, never null
+     * @return string representation of the value
+     */
+    String format(T value);
+}
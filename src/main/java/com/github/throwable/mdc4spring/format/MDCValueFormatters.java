@@ -0,0 +1,297 @@
+package com.github.throwable.mdc4spring.format;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of MDC value formatters. A formatter for a value class is resolved once and cached:
+ * <ol>
+ *     <li>formatter registered for the class or its nearest superclass</li>
+ *     <li>formatter registered for any of its interfaces</li>
+ *     <li><code>toString()</code> otherwise</li>
+ * </ol>
+ * Built-in formatters change the output of some common types, so they must be registered explicitly with
+ * {@link #registerBuiltInFormatters()} or the <code>com.github.throwable.mdc4spring.builtInFormatters</code>
+ * system property: enums are formatted with their names, numbers in plain notation, <code>UUID</code> without
+ * intermediate strings, <code>Date</code> and <code>Calendar</code> as ISO-8601 instant, <code>ZonedDateTime</code>
+ * as ISO-8601 with offset, arrays, collections and maps element by element.
+ * <p>
+ * Sample usage:
+ * <pre>
+ * MDCValueFormatters.register(Order.class, order -&gt; "Order#" + order.getId());
+ * </pre>
+ */
+public final class MDCValueFormatters {
+    /**
+     * Register built-in formatters on startup if set to true. Default value is false.
+     */
+    public static final String BUILT_IN_FORMATTERS_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.builtInFormatters";
+
+    private static final MDCValueFormatter<Object> TO_STRING_FORMATTER = Object::toString;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final Class<?>[] PRIMITIVE_ARRAY_TYPES = {
+            byte[].class, short[].class, int[].class, long[].class,
+            char[].class, float[].class, double[].class, boolean[].class
+    };
+
+    private static final ConcurrentHashMap<Class<?>, MDCValueFormatter<?>> registeredFormatters = new ConcurrentHashMap<>();
+    // Replaced on each registration: a ClassValue can not be cleared for all the classes at once
+    private static volatile ClassValue<MDCValueFormatter<Object>> resolvedFormatters = newResolvedFormatters();
+    // Strings are returned as is unless a formatter applies to them
+    private static volatile boolean stringsFormatted;
+
+    static {
+        if (Boolean.getBoolean(BUILT_IN_FORMATTERS_SYSTEM_PROPERTY))
+            registerBuiltInFormatters();
+    }
+
+    private MDCValueFormatters() {
+    }
+
+    /**
+     * Register built-in formatters: enums are formatted with their names, numbers in plain notation,
+     * <code>UUID</code> in canonical form, <code>Date</code> and <code>Calendar</code> as ISO-8601 instant,
+     * <code>ZonedDateTime</code> as ISO-8601 with offset and without region, arrays, collections and maps element
+     * by element with the formatters of their elements. Other <code>java.time</code> types are not affected:
+     * their <code>toString()</code> is already ISO-8601.
+     * Note that built-in formatters take precedence over <code>toString()</code> overridden in these types.
+     */
+    public static void registerBuiltInFormatters() {
+        registeredFormatters.put(Enum.class, (MDCValueFormatter<Enum<?>>) Enum::name);
+        registeredFormatters.put(Number.class, (MDCValueFormatter<Number>) MDCValueFormatters::formatNumber);
+        registeredFormatters.put(BigDecimal.class, (MDCValueFormatter<BigDecimal>) BigDecimal::toPlainString);
+        registeredFormatters.put(UUID.class, (MDCValueFormatter<UUID>) MDCValueFormatters::formatUuid);
+        registeredFormatters.put(Date.class, (MDCValueFormatter<Date>) value -> value.toInstant().toString());
+        registeredFormatters.put(Calendar.class, (MDCValueFormatter<Calendar>) value -> value.toInstant().toString());
+        registeredFormatters.put(ZonedDateTime.class,
+                (MDCValueFormatter<ZonedDateTime>) DateTimeFormatter.ISO_OFFSET_DATE_TIME::format);
+        registeredFormatters.put(Collection.class, (MDCValueFormatter<Collection<?>>) MDCValueFormatters::formatElements);
+        registeredFormatters.put(Map.class, (MDCValueFormatter<Map<?, ?>>) MDCValueFormatters::formatEntries);
+        registeredFormatters.put(Object[].class, MDCValueFormatters::formatArray);
+        for (Class<?> arrayType : PRIMITIVE_ARRAY_TYPES)
+            registeredFormatters.put(arrayType, MDCValueFormatters::formatArray);
+        formattersChanged();
+    }
+
+    /**
+     * Remove built-in formatters.
+     */
+    public static void unregisterBuiltInFormatters() {
+        registeredFormatters.keySet().removeAll(Arrays.asList(
+                Enum.class, Number.class, BigDecimal.class, UUID.class, Date.class, Calendar.class, ZonedDateTime.class,
+                Collection.class, Map.class, Object[].class));
+        registeredFormatters.keySet().removeAll(Arrays.asList(PRIMITIVE_ARRAY_TYPES));
+        formattersChanged();
+    }
+
+    /**
+     * Register formatter for values of the type and its subtypes.
+     * @param type value type
+     * @param formatter formatter
+     * @param <T> value type
+     * @throws IllegalArgumentException if type or formatter is null
+     */
+    public static <T> void register(Class<T> type, MDCValueFormatter<? super T> formatter) throws IllegalArgumentException {
+        if (type == null) throw new IllegalArgumentException("Type must not be null");
+        if (formatter == null) throw new IllegalArgumentException("Formatter must not be null");
+        registeredFormatters.put(type, formatter);
+        formattersChanged();
+    }
+
+    /**
+     * Remove formatter registered for the type.
+     * @param type value type
+     */
+    public static void unregister(Class<?> type) {
+        if (registeredFormatters.remove(type) != null)
+            formattersChanged();
+    }
+
+    /**
+     * Format value with a formatter resolved for its class.
+     * @param value value to format
+     * @return formatted value or null if the value is null
+     */
+    public static String format(Object value) {
+        if (value == null)
+            return null;
+        // Fast path for the most common case
+        if (value instanceof String && !stringsFormatted)
+            return (String) value;
+        return resolvedFormatters.get(value.getClass()).format(value);
+    }
+
+    /**
+     * Format primitive value the same way as its boxed value. The value is boxed only if a formatter applies to it.
+     * @param value value to format
+     * @return formatted value
+     */
+    public static String formatLong(long value) {
+        MDCValueFormatter<Object> formatter = resolvedFormatters.get(Long.class);
+        return formatter == TO_STRING_FORMATTER ? Long.toString(value) : formatter.format(value);
+    }
+
+    /**
+     * Format primitive value the same way as its boxed value. The value is boxed only if a formatter applies to it.
+     * @param value value to format
+     * @return formatted value
+     */
+    public static String formatInt(int value) {
+        MDCValueFormatter<Object> formatter = resolvedFormatters.get(Integer.class);
+        return formatter == TO_STRING_FORMATTER ? Integer.toString(value) : formatter.format(value);
+    }
+
+    /**
+     * Format primitive value the same way as its boxed value. The value is boxed only if a formatter applies to it.
+     * @param value value to format
+     * @return formatted value
+     */
+    public static String formatBoolean(boolean value) {
+        MDCValueFormatter<Object> formatter = resolvedFormatters.get(Boolean.class);
+        return formatter == TO_STRING_FORMATTER ? (value ? "true" : "false") : formatter.format(value);
+    }
+
+    /**
+     * Format primitive value the same way as its boxed value. The value is boxed only if a formatter applies to it.
+     * @param value value to format
+     * @return formatted value
+     */
+    public static String formatDouble(double value) {
+        MDCValueFormatter<Object> formatter = resolvedFormatters.get(Double.class);
+        return formatter == TO_STRING_FORMATTER ? Double.toString(value) : formatter.format(value);
+    }
+
+    /**
+     * Get formatter resolved for the type.
+     * @param type value type
+     * @return resolved formatter
+     */
+    public static MDCValueFormatter<Object> formatterFor(Class<?> type) {
+        return resolvedFormatters.get(type);
+    }
+
+    private static void formattersChanged() {
+        resolvedFormatters = newResolvedFormatters();
+        stringsFormatted = findRegisteredFormatter(String.class) != null;
+    }
+
+    private static ClassValue<MDCValueFormatter<Object>> newResolvedFormatters() {
+        return new ClassValue<MDCValueFormatter<Object>>() {
+            @Override
+            protected MDCValueFormatter<Object> computeValue(Class<?> type) {
+                return resolveFormatter(type);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MDCValueFormatter<Object> resolveFormatter(Class<?> type) {
+        MDCValueFormatter<?> formatter = findRegisteredFormatter(type);
+        return formatter != null ? (MDCValueFormatter<Object>) formatter : TO_STRING_FORMATTER;
+    }
+
+    private static MDCValueFormatter<?> findRegisteredFormatter(Class<?> type) {
+        if (registeredFormatters.isEmpty())
+            return null;
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            MDCValueFormatter<?> formatter = registeredFormatters.get(clazz);
+            if (formatter != null)
+                return formatter;
+        }
+        // Arrays of reference types are not subclasses of Object[]
+        if (type.isArray() && !type.getComponentType().isPrimitive()) {
+            MDCValueFormatter<?> formatter = registeredFormatters.get(Object[].class);
+            if (formatter != null)
+                return formatter;
+        }
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            MDCValueFormatter<?> formatter = findInterfaceFormatter(clazz);
+            if (formatter != null)
+                return formatter;
+        }
+        return null;
+    }
+
+    private static MDCValueFormatter<?> findInterfaceFormatter(Class<?> type) {
+        for (Class<?> anInterface : type.getInterfaces()) {
+            MDCValueFormatter<?> formatter = registeredFormatters.get(anInterface);
+            if (formatter == null)
+                formatter = findInterfaceFormatter(anInterface);
+            if (formatter != null)
+                return formatter;
+        }
+        return null;
+    }
+
+    private static String formatNumber(Number number) {
+        String formatted = number.toString();
+        // Only floating point types switch to scientific notation
+        if ((number instanceof Double || number instanceof Float) && formatted.indexOf('E') >= 0)
+            return new BigDecimal(formatted).toPlainString();
+        return formatted;
+    }
+
+    private static String formatUuid(UUID uuid) {
+        char[] chars = new char[36];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        formatHex(chars, 0, msb >>> 32, 8);
+        chars[8] = '-';
+        formatHex(chars, 9, msb >>> 16, 4);
+        chars[13] = '-';
+        formatHex(chars, 14, msb, 4);
+        chars[18] = '-';
+        formatHex(chars, 19, lsb >>> 48, 4);
+        chars[23] = '-';
+        formatHex(chars, 24, lsb, 12);
+        return new String(chars);
+    }
+
+    private static void formatHex(char[] chars, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static String formatArray(Object array) {
+        if (array instanceof Object[]) return formatElements(Arrays.asList((Object[]) array));
+        if (array instanceof byte[]) return Arrays.toString((byte[]) array);
+        if (array instanceof short[]) return Arrays.toString((short[]) array);
+        if (array instanceof int[]) return Arrays.toString((int[]) array);
+        if (array instanceof long[]) return Arrays.toString((long[]) array);
+        if (array instanceof char[]) return Arrays.toString((char[]) array);
+        if (array instanceof float[]) return Arrays.toString((float[]) array);
+        if (array instanceof double[]) return Arrays.toString((double[]) array);
+        return Arrays.toString((boolean[]) array);
+    }
+
+    private static String formatElements(Collection<?> collection) {
+        StringBuilder sb = new StringBuilder(collection.size() * 8 + 2).append('[');
+        boolean first = true;
+        for (Object element : collection) {
+            if (!first)
+                sb.append(", ");
+            first = false;
+            sb.append(element == collection ? "(this Collection)" : format(element));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String formatEntries(Map<?, ?> map) {
+        StringBuilder sb = new StringBuilder(map.size() * 16 + 2).append('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first)
+                sb.append(", ");
+            first = false;
+            sb.append(entry.getKey() == map ? "(this Map)" : format(entry.getKey()))
+                    .append('=')
+                    .append(entry.getValue() == map ? "(this Map)" : format(entry.getValue()));
+        }
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.throwable.mdc4spring.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event that spans a single MDC parameter expression evaluation.
+ */
+@Name("com.github.throwable.mdc4spring.ExpressionEvaluation")
+@Label("MDC Expression Evaluation")
+@Description("Evaluation of MDC parameter expression")
+@Category({"MDC4Spring"})
+@StackTrace(false)
+public class MDCExpressionEvaluationEvent extends Event {
+    @Label("Expression")
+    public String expression;
+
+    @Label("Method")
+    @Description("Annotated method the expression is defined for")
+    public String method;
+
+    @Label("Failed")
+    public boolean failed;
+
+    @Label("Failure")
+    @Description("Failure message if evaluation failed")
+    public String failure;
+}
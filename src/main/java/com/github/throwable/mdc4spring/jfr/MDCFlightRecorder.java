@@ -0,0 +1,95 @@
+package com.github.throwable.mdc4spring.jfr;
+
+import jdk.jfr.EventType;
+
+/**
+ * Entry point for the library's JFR events. Callers only deal with opaque event objects, so that JFR classes are
+ * never loaded on runtimes without Flight Recorder (e.g. Java 8 before 8u262).
+ * Events are allocated only when they are enabled in a running recording.
+ */
+public final class MDCFlightRecorder {
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private MDCFlightRecorder() {
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, MDCFlightRecorder.class.getClassLoader());
+            // Registers both event types
+            return EventTypes.SCOPE != null && EventTypes.EXPRESSION_EVALUATION != null;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Begin an MDC scope event.
+     * @return the event to pass to {@link #endScope}, or null if the event is not enabled
+     */
+    public static Object beginScope() {
+        if (!AVAILABLE || !EventTypes.SCOPE.isEnabled())
+            return null;
+        MDCScopeEvent event = new MDCScopeEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an MDC scope event.
+     * @param scopeEvent event returned by {@link #beginScope()}
+     * @param namespace key prefix of the scope
+     * @param depth scope depth
+     * @param paramCount number of parameters defined in the scope
+     */
+    public static void endScope(Object scopeEvent, String namespace, int depth, int paramCount) {
+        MDCScopeEvent event = (MDCScopeEvent) scopeEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.namespace = namespace;
+            event.depth = depth;
+            event.paramCount = paramCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Begin an expression evaluation event.
+     * @return the event to pass to {@link #endExpressionEvaluation}, or null if the event is not enabled
+     */
+    public static Object beginExpressionEvaluation() {
+        if (!AVAILABLE || !EventTypes.EXPRESSION_EVALUATION.isEnabled())
+            return null;
+        MDCExpressionEvaluationEvent event = new MDCExpressionEvaluationEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End and commit an expression evaluation event.
+     * @param evaluationEvent event returned by {@link #beginExpressionEvaluation()}
+     * @param expression evaluated expression
+     * @param method annotated method the expression is defined for
+     * @param failed true if the evaluation failed
+     * @param failure failure message if the evaluation failed, null otherwise
+     */
+    public static void endExpressionEvaluation(Object evaluationEvent, String expression, String method,
+                                               boolean failed, String failure)
+    {
+        MDCExpressionEvaluationEvent event = (MDCExpressionEvaluationEvent) evaluationEvent;
+        event.end();
+        if (event.shouldCommit()) {
+            event.expression = expression;
+            event.method = method;
+            event.failed = failed;
+            event.failure = failure;
+            event.commit();
+        }
+    }
+
+    // Loaded only when JFR is available
+    private static class EventTypes {
+        private static final EventType SCOPE = EventType.getEventType(MDCScopeEvent.class);
+        private static final EventType EXPRESSION_EVALUATION = EventType.getEventType(MDCExpressionEvaluationEvent.class);
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.throwable.mdc4spring.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Java Flight Recorder event that spans the lifetime of an MDC scope: from its creation until it is closed.
+ */
+@Name("com.github.throwable.mdc4spring.Scope")
+@Label("MDC Scope")
+@Description("Lifetime of an MDC scope")
+@Category({"MDC4Spring"})
+@StackTrace(false)
+public class MDCScopeEvent extends Event {
+    @Label("Namespace")
+    @Description("Key prefix of the scope")
+    public String namespace;
+
+    @Label("Depth")
+    @Description("Scope nesting depth, 1 for root MDC")
+    public int depth;
+
+    @Label("Parameters Count")
+    @Description("Number of parameters defined in the scope when it was closed")
+    public int paramCount;
+}
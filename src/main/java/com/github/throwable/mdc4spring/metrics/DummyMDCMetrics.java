@@ -0,0 +1,33 @@
+package com.github.throwable.mdc4spring.metrics;
+
+import java.lang.reflect.Method;
+
+public class DummyMDCMetrics implements MDCMetrics {
+    public static final DummyMDCMetrics INSTANCE = new DummyMDCMetrics();
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public boolean sampleTiming() {
+        return false;
+    }
+
+    @Override
+    public void recordParamsEvaluation(Method method, long durationNanos) {
+    }
+
+    @Override
+    public void recordExpressionError(String expression) {
+    }
+
+    @Override
+    public void recordCacheAccess(String cacheName, boolean hit) {
+    }
+
+    @Override
+    public void recordScope(int depth, int paramsCount) {
+    }
+}
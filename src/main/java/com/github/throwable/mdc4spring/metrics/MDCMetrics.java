@@ -0,0 +1,72 @@
+package com.github.throwable.mdc4spring.metrics;
+
+import java.lang.reflect.Method;
+
+/**
+ * Bridge with the metrics subsystem that collects the library's own overhead: parameter evaluation time,
+ * expression errors, internal caches behavior and MDC scopes shape.
+ * <p>
+ * Current implementation is set with {@link MDCMetricsHolder#setMetrics(MDCMetrics)}. By default, the
+ * {@link DummyMDCMetrics} is used, so all the probes are no-ops.
+ */
+public interface MDCMetrics {
+    /** Cache of resolved annotated method configurations */
+    String ANNOTATED_METHOD_CONFIG_CACHE = "annotatedMethodConfigCache";
+    /** Cache of parsed expressions */
+    String EXPRESSION_CACHE = "expressionCache";
+    /** Cache of resolved local bean property accessors */
+    String RESOLVED_ACCESSORS_CACHE = "resolvedAccessors";
+
+    /**
+     * @return true if metrics are collected, false otherwise
+     */
+    boolean isEnabled();
+
+    /**
+     * Decide if the current method parameters evaluation must be timed.
+     * Timing is sampled to keep the overhead of clock reads low.
+     * @return true if the current evaluation must be timed
+     */
+    boolean sampleTiming();
+
+    /**
+     * Record the time spent to evaluate all MDC parameters of a method invocation.
+     * @param method invoked method
+     * @param durationNanos evaluation time in nanoseconds
+     */
+    void recordParamsEvaluation(Method method, long durationNanos);
+
+    /**
+     * Record a failed expression evaluation.
+     * @param expression expression that failed
+     */
+    void recordExpressionError(String expression);
+
+    /**
+     * Record a lookup in one of internal caches.
+     * @param cacheName cache name
+     * @param hit true if the value was found in the cache
+     */
+    void recordCacheAccess(String cacheName, boolean hit);
+
+    /**
+     * Record the shape of MDC scope that is being closed.
+     * @param depth scope depth, 1 for root MDC
+     * @param paramsCount number of parameters defined in the scope
+     */
+    void recordScope(int depth, int paramsCount);
+
+    /**
+     * Record a parameter that exceeded one of MDC limits.
+     * @param limit limit name, one of <code>MDCLimits.*_LIMIT</code> constants
+     */
+    default void recordLimitExceeded(String limit) {
+    }
+
+    /**
+     * Record an expression that is suspended (not evaluated for a while) after repeated failures.
+     * @param expression suspended expression
+     */
+    default void recordExpressionSuspended(String expression) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.github.throwable.mdc4spring.metrics;
+
+/**
+ * Holds current MDCMetrics implementation.
+ */
+public class MDCMetricsHolder {
+    private static MDCMetrics metrics = DummyMDCMetrics.INSTANCE;
+
+    private MDCMetricsHolder() {
+    }
+
+    /**
+     * Get current metrics implementation.
+     * @return current metrics implementation, never null
+     */
+    public static MDCMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Set metrics implementation.
+     * @param mdcMetrics new metrics implementation, null to disable metrics
+     */
+    public static void setMetrics(MDCMetrics mdcMetrics) {
+        metrics = mdcMetrics != null ? mdcMetrics : DummyMDCMetrics.INSTANCE;
+    }
+
+    /**
+     * Record a lookup in one of internal caches if metrics are enabled.
+     * @param cacheName cache name
+     * @param hit true if the value was found in the cache
+     */
+    public static void recordCacheAccess(String cacheName, boolean hit) {
+        MDCMetrics currentMetrics = metrics;
+        if (currentMetrics.isEnabled())
+            currentMetrics.recordCacheAccess(cacheName, hit);
+    }
+}
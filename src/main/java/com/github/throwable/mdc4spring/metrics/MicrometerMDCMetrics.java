@@ -0,0 +1,166 @@
+package com.github.throwable.mdc4spring.metrics;
+
+import com.github.throwable.mdc4spring.MDCLimits;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer-based metrics implementation.
+ * <ul>
+ *     <li><code>mdc4spring.params.evaluation</code>: timer of method parameters evaluation (sampled), tagged by class and method</li>
+ *     <li><code>mdc4spring.expression.errors</code>: counter of failed expression evaluations</li>
+ *     <li><code>mdc4spring.expression.suspensions</code>: counter of expressions suspended after repeated failures</li>
+ *     <li><code>mdc4spring.cache.gets</code>: internal cache lookups tagged by cache name and result (hit/miss)</li>
+ *     <li><code>mdc4spring.scope.depth</code>: histogram of closed MDC scopes depth</li>
+ *     <li><code>mdc4spring.scope.params</code>: histogram of parameters count per closed MDC scope</li>
+ *     <li><code>mdc4spring.limits.exceeded</code>: parameters that exceeded MDC limits tagged by limit name</li>
+ * </ul>
+ */
+public class MicrometerMDCMetrics implements MDCMetrics, AutoCloseable {
+    public static final String PARAMS_EVALUATION_TIMER = "mdc4spring.params.evaluation";
+    public static final String EXPRESSION_ERRORS_COUNTER = "mdc4spring.expression.errors";
+    public static final String EXPRESSION_SUSPENSIONS_COUNTER = "mdc4spring.expression.suspensions";
+    public static final String CACHE_GETS_COUNTER = "mdc4spring.cache.gets";
+    public static final String SCOPE_DEPTH_SUMMARY = "mdc4spring.scope.depth";
+    public static final String SCOPE_PARAMS_SUMMARY = "mdc4spring.scope.params";
+    public static final String LIMITS_EXCEEDED_COUNTER = "mdc4spring.limits.exceeded";
+    private static final double[] SCOPE_DEPTH_BUCKETS = {1, 2, 3, 4, 6, 8, 12, 16, 32};
+    private static final double[] SCOPE_PARAMS_BUCKETS = {1, 2, 4, 8, 16, 32, 64, 128};
+
+    private final MeterRegistry meterRegistry;
+    private final double timingSampleRate;
+    private final ConcurrentHashMap<Method, Timer> methodTimers = new ConcurrentHashMap<>();
+    private final Counter expressionErrors;
+    private final Counter expressionSuspensions;
+    private final Map<String, Counter> cacheHits;
+    private final Map<String, Counter> cacheMisses;
+    private final DistributionSummary scopeDepth;
+    private final DistributionSummary scopeParams;
+    private final Map<String, Counter> limitsExceeded;
+
+    /**
+     * @param meterRegistry meter registry to register metrics in
+     * @param timingSampleRate fraction of method invocations to time, from 0 (never) to 1 (always)
+     */
+    public MicrometerMDCMetrics(MeterRegistry meterRegistry, double timingSampleRate) {
+        this.meterRegistry = meterRegistry;
+        this.timingSampleRate = timingSampleRate;
+        this.expressionErrors = Counter.builder(EXPRESSION_ERRORS_COUNTER)
+                .description("Failed MDC parameter expression evaluations")
+                .register(meterRegistry);
+        this.expressionSuspensions = Counter.builder(EXPRESSION_SUSPENSIONS_COUNTER)
+                .description("MDC parameter expressions suspended after repeated failures")
+                .register(meterRegistry);
+        ConcurrentHashMap<String, Counter> hits = new ConcurrentHashMap<>();
+        ConcurrentHashMap<String, Counter> misses = new ConcurrentHashMap<>();
+        for (String cacheName : new String[] {ANNOTATED_METHOD_CONFIG_CACHE, EXPRESSION_CACHE, RESOLVED_ACCESSORS_CACHE}) {
+            hits.put(cacheName, cacheCounter(cacheName, "hit"));
+            misses.put(cacheName, cacheCounter(cacheName, "miss"));
+        }
+        this.cacheHits = Collections.unmodifiableMap(hits);
+        this.cacheMisses = Collections.unmodifiableMap(misses);
+        // Both values are small integers: fixed buckets describe them better than a percentile histogram
+        this.scopeDepth = DistributionSummary.builder(SCOPE_DEPTH_SUMMARY)
+                .description("Depth of closed MDC scopes")
+                .serviceLevelObjectives(SCOPE_DEPTH_BUCKETS)
+                .register(meterRegistry);
+        this.scopeParams = DistributionSummary.builder(SCOPE_PARAMS_SUMMARY)
+                .description("Number of parameters defined in closed MDC scopes")
+                .serviceLevelObjectives(SCOPE_PARAMS_BUCKETS)
+                .register(meterRegistry);
+        ConcurrentHashMap<String, Counter> limits = new ConcurrentHashMap<>();
+        for (String limit : new String[] {MDCLimits.VALUE_LENGTH_LIMIT, MDCLimits.SCOPE_PARAMS_LIMIT, MDCLimits.TOTAL_LENGTH_LIMIT}) {
+            limits.put(limit, Counter.builder(LIMITS_EXCEEDED_COUNTER)
+                    .description("MDC parameters that exceeded MDC limits")
+                    .tag("limit", limit)
+                    .register(meterRegistry));
+        }
+        this.limitsExceeded = Collections.unmodifiableMap(limits);
+    }
+
+    private Counter cacheCounter(String cacheName, String result) {
+        return Counter.builder(CACHE_GETS_COUNTER)
+                .description("MDC4Spring internal cache lookups")
+                .tag("cache", cacheName)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean sampleTiming() {
+        return timingSampleRate >= 1 ||
+                (timingSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < timingSampleRate);
+    }
+
+    @Override
+    public void recordParamsEvaluation(Method method, long durationNanos) {
+        Timer timer = methodTimers.get(method);
+        if (timer == null)
+            timer = methodTimers.computeIfAbsent(method, m -> Timer.builder(PARAMS_EVALUATION_TIMER)
+                    .description("Time to evaluate MDC parameters of a method invocation (sampled)")
+                    .tag("class", m.getDeclaringClass().getName())
+                    .tag("method", m.getName())
+                    .register(meterRegistry));
+        timer.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordExpressionError(String expression) {
+        expressionErrors.increment();
+    }
+
+    @Override
+    public void recordExpressionSuspended(String expression) {
+        expressionSuspensions.increment();
+    }
+
+    @Override
+    public void recordCacheAccess(String cacheName, boolean hit) {
+        Counter counter = hit ? cacheHits.get(cacheName) : cacheMisses.get(cacheName);
+        if (counter != null)
+            counter.increment();
+    }
+
+    @Override
+    public void recordScope(int depth, int paramsCount) {
+        scopeDepth.record(depth);
+        scopeParams.record(paramsCount);
+    }
+
+    @Override
+    public void recordLimitExceeded(String limit) {
+        Counter counter = limitsExceeded.get(limit);
+        if (counter != null)
+            counter.increment();
+    }
+
+    /**
+     * @return parameter evaluation timers registered so far by method
+     */
+    public Map<Method, Timer> getMethodTimers() {
+        return Collections.unmodifiableMap(methodTimers);
+    }
+
+    /**
+     * Uninstall this instance if it is a current metrics implementation.
+     */
+    @Override
+    public void close() {
+        if (MDCMetricsHolder.getMetrics() == this)
+            MDCMetricsHolder.setMetrics(null);
+    }
+}
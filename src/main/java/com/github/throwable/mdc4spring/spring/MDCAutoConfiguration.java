@@ -1,12 +1,159 @@
 package com.github.throwable.mdc4spring.spring;
 
+import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.MDCLimits;
+import com.github.throwable.mdc4spring.MDCRetention;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
+import com.github.throwable.mdc4spring.metrics.MicrometerMDCMetrics;
+import com.github.throwable.mdc4spring.spring.actuate.MDCEndpoint;
+import com.github.throwable.mdc4spring.spring.messaging.MDCMessageHeadersPropagator;
+import com.github.throwable.mdc4spring.spring.messaging.MDCMessagingProperties;
+import com.github.throwable.mdc4spring.spring.messaging.MessageMDCParamsExtractor;
+import com.github.throwable.mdc4spring.spring.web.MDCRequestFilter;
+import com.github.throwable.mdc4spring.spring.web.MDCWebFilter;
+import com.github.throwable.mdc4spring.spring.web.MDCWebProperties;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.autoconfigure.endpoint.condition.ConditionalOnAvailableEndpoint;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.*;
+import org.springframework.core.env.Environment;
 
 /**
  * MDC4Spring autoconfiguration for Spring Boot 3.x
  */
-@AutoConfiguration
+@AutoConfiguration(afterName = "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration")
 @Import(MDCConfiguration.class)
 public class MDCAutoConfiguration {
+    static final String MAX_VALUE_LENGTH_PROPERTY = "mdc4spring.limits.max-value-length";
+    static final String MAX_SCOPE_PARAMS_PROPERTY = "mdc4spring.limits.max-scope-params";
+    static final String MAX_TOTAL_LENGTH_PROPERTY = "mdc4spring.limits.max-total-length";
+    static final String RETENTION_PROPERTY = "mdc4spring.retention";
+
+    /**
+     * Applies MDC limits defined in configuration properties. Limits that are not defined keep their current values
+     * (taken from system properties).
+     */
+    @Bean
+    MDCLimits mdcLimits(Environment environment) {
+        MDCLimits defaults = MDC.getLimits();
+        MDCLimits limits = new MDCLimits(
+                environment.getProperty(MAX_VALUE_LENGTH_PROPERTY, Integer.class, defaults.getMaxValueLength()),
+                environment.getProperty(MAX_SCOPE_PARAMS_PROPERTY, Integer.class, defaults.getMaxScopeParams()),
+                environment.getProperty(MAX_TOTAL_LENGTH_PROPERTY, Integer.class, defaults.getMaxTotalLength()));
+        MDC.setLimits(limits);
+        return limits;
+    }
+
+    /**
+     * Applies MDC values retention mode defined in configuration properties.
+     */
+    @Bean
+    MDCRetention mdcRetention(Environment environment) {
+        MDCRetention retention = environment.getProperty(RETENTION_PROPERTY, MDCRetention.class, MDC.getRetention());
+        MDC.setRetention(retention);
+        return retention;
+    }
+
+    /**
+     * Enables Micrometer metrics when a MeterRegistry is present in the context.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    static class MDCMetricsConfiguration {
+        /**
+         * Fraction of method invocations whose parameters evaluation is timed (0..1).
+         */
+        static final String TIMING_SAMPLE_RATE_PROPERTY = "mdc4spring.metrics.timing-sample-rate";
+
+        @Bean
+        MicrometerMDCMetrics mdcMetrics(MeterRegistry meterRegistry, Environment environment) {
+            MicrometerMDCMetrics metrics = new MicrometerMDCMetrics(meterRegistry,
+                    environment.getProperty(TIMING_SAMPLE_RATE_PROPERTY, Double.class, 0.01));
+            MDCMetricsHolder.setMetrics(metrics);
+            return metrics;
+        }
+    }
+
+    /**
+     * Exposes <code>/actuator/mdc</code> endpoint when Spring Boot Actuator is present.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.boot.actuate.endpoint.annotation.Endpoint")
+    @ConditionalOnAvailableEndpoint(endpoint = MDCEndpoint.class)
+    static class MDCEndpointConfiguration {
+        @Bean
+        MDCEndpoint mdcEndpoint(ApplicationContext applicationContext,
+                                AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator,
+                                ObjectProvider<MicrometerMDCMetrics> metrics)
+        {
+            return new MDCEndpoint(applicationContext, annotatedMethodMDCParamsEvaluator, metrics);
+        }
+    }
+
+    /**
+     * Maps headers of incoming <code>Message</code> arguments to MDC parameters and propagates
+     * current MDC to outgoing messages.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "org.springframework.messaging.Message")
+    @ConditionalOnProperty(prefix = "mdc4spring.messaging", name = "enabled", matchIfMissing = true)
+    @EnableConfigurationProperties(MDCMessagingProperties.class)
+    static class MDCMessagingConfiguration {
+        @Bean
+        MessageMDCParamsExtractor messageMDCParamsExtractor(MDCMessagingProperties properties) {
+            return new MessageMDCParamsExtractor(properties);
+        }
+
+        @Bean
+        MDCMessageHeadersPropagator mdcMessageHeadersPropagator(MDCMessagingProperties properties) {
+            return new MDCMessageHeadersPropagator(properties);
+        }
+    }
+
+    /**
+     * Opens a root MDC for each request in Servlet-based web applications.
+     * The filter is built on <code>jakarta.servlet</code> API, so it is not available for <code>javax.servlet</code>
+     * applications (Spring Boot 2.x).
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    @ConditionalOnClass(name = {"jakarta.servlet.Filter", "org.springframework.web.filter.OncePerRequestFilter"})
+    @ConditionalOnProperty(prefix = "mdc4spring.web", name = "enabled", matchIfMissing = true)
+    @EnableConfigurationProperties(MDCWebProperties.class)
+    static class MDCServletConfiguration {
+        @Bean
+        FilterRegistrationBean<MDCRequestFilter> mdcRequestFilter(MDCWebProperties properties) {
+            FilterRegistrationBean<MDCRequestFilter> registration =
+                    new FilterRegistrationBean<>(new MDCRequestFilter(properties));
+            registration.setDispatcherTypes(DispatcherType.REQUEST, DispatcherType.ASYNC);
+            registration.setOrder(properties.getFilterOrder());
+            return registration;
+        }
+    }
+
+    /**
+     * Opens a root MDC for each request in WebFlux applications.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    @ConditionalOnClass(name = "org.springframework.web.server.WebFilter")
+    @ConditionalOnProperty(prefix = "mdc4spring.web", name = "enabled", matchIfMissing = true)
+    @EnableConfigurationProperties(MDCWebProperties.class)
+    static class MDCReactiveConfiguration {
+        @Bean
+        MDCWebFilter mdcWebFilter(MDCWebProperties properties) {
+            return new MDCWebFilter(properties);
+        }
+    }
 }
@@ -1,25 +1,42 @@
 package com.github.throwable.mdc4spring.spring;
 
 import com.github.throwable.mdc4spring.spring.spel.SpelExpressionEvaluator;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.ArgumentMDCParamsExtractor;
 import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.env.Environment;
 
+import java.util.stream.Collectors;
+
 /**
  * MDC4Spring configuration.
  * When using Spring Boot it is added to your ApplicationContext automatically.
  * If you are using Spring Framework you should import it manually.
  */
 @Configuration
-@ComponentScan
+// Configuration classes (including the conditional autoconfiguration ones) must only be processed by import
+@ComponentScan(excludeFilters = @ComponentScan.Filter(type = FilterType.ANNOTATION, classes = Configuration.class))
 @EnableAspectJAutoProxy
 public class MDCConfiguration {
     @Bean
     ExpressionEvaluator spelExpressionEvaluator(Environment environment, ApplicationContext applicationContext) {
         return new SpelExpressionEvaluator(environment, applicationContext);
     }
+
+    @Bean
+    AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator(ExpressionEvaluator expressionEvaluator,
+            ObjectProvider<ArgumentMDCParamsExtractor> argumentExtractors)
+    {
+        DefaultParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+        return new AnnotatedMethodMDCParamsEvaluator(parameterNameDiscoverer::getParameterNames, expressionEvaluator,
+                argumentExtractors.orderedStream().collect(Collectors.toList()));
+    }
 }
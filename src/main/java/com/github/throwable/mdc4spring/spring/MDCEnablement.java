@@ -0,0 +1,155 @@
+package com.github.throwable.mdc4spring.spring;
+
+import com.github.throwable.mdc4spring.util.WeakIdentityMap;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runtime switch of MDC enrichment for intercepted methods. It is configured with properties:
+ * <ul>
+ *     <li><code>mdc4spring.enabled</code>: global kill switch, true by default</li>
+ *     <li><code>mdc4spring.include-packages</code>: if defined, only beans from these packages (and their subpackages) are enriched</li>
+ *     <li><code>mdc4spring.exclude-packages</code>: beans from these packages (and their subpackages) are not enriched</li>
+ *     <li><code>mdc4spring.beans.&lt;beanName&gt;.enabled</code>: per-bean override of package rules</li>
+ * </ul>
+ * Properties are re-read when the context is refreshed or the environment changes (see {@link MDCRefreshListener}).
+ * The decision is precomputed for each intercepted bean instance, whose bean name is resolved once,
+ * so checking it costs a lookup and a volatile read.
+ */
+@Component
+public class MDCEnablement {
+    public static final String ENABLED_PROPERTY = "mdc4spring.enabled";
+    public static final String INCLUDE_PACKAGES_PROPERTY = "mdc4spring.include-packages";
+    public static final String EXCLUDE_PACKAGES_PROPERTY = "mdc4spring.exclude-packages";
+    public static final String BEAN_ENABLED_PROPERTY_FORMAT = "mdc4spring.beans.%s.enabled";
+
+    private final Environment environment;
+    private final ApplicationContext applicationContext;
+    // By intercepted bean instance: beans of the same class may have different overrides
+    private final WeakIdentityMap<BeanSwitch> beanSwitches = new WeakIdentityMap<>();
+    private volatile Settings settings;
+
+    @Autowired
+    public MDCEnablement(Environment environment, ApplicationContext applicationContext) {
+        this.environment = environment;
+        this.applicationContext = applicationContext;
+        this.settings = readSettings();
+    }
+
+    /**
+     * Check if MDC enrichment is enabled for method invocations on the bean.
+     * @param target bean instance the method is invoked on
+     * @return true if the invocation must be enriched
+     */
+    public boolean isEnabled(Object target) {
+        BeanSwitch beanSwitch = beanSwitches.get(target);
+        if (beanSwitch == null) {
+            beanSwitch = beanSwitches.computeIfAbsent(target, () -> {
+                Class<?> targetClass = AopProxyUtils.ultimateTargetClass(target);
+                String beanName = resolveBeanName(target, targetClass);
+                return new BeanSwitch(targetClass, beanName, isEnabled(settings, targetClass, beanName));
+            });
+        }
+        return beanSwitch.enabled;
+    }
+
+    /**
+     * Re-read configuration properties and recompute the switches of all beans intercepted so far.
+     */
+    public void refresh() {
+        Settings newSettings = readSettings();
+        settings = newSettings;
+        for (BeanSwitch beanSwitch : beanSwitches.values())
+            beanSwitch.enabled = isEnabled(newSettings, beanSwitch.targetClass, beanSwitch.beanName);
+    }
+
+    /**
+     * Find the name of the bean instance among the beans of exactly its class.
+     * @return bean name, or null if the instance is not a singleton bean of the context
+     */
+    @Nullable
+    private String resolveBeanName(Object target, Class<?> targetClass) {
+        String[] beanNames;
+        try {
+            beanNames = applicationContext.getBeanNamesForType(targetClass, true, false);
+        } catch (IllegalStateException e) {
+            // The context is not active
+            return null;
+        }
+        for (String beanName : beanNames) {
+            if (!applicationContext.isSingleton(beanName))
+                continue;
+            Object bean = applicationContext.getBean(beanName);
+            // Unwrap proxies, possibly nested
+            for (Object proxyTarget = bean; proxyTarget != null; proxyTarget = AopProxyUtils.getSingletonTarget(proxyTarget)) {
+                if (proxyTarget == target)
+                    return beanName;
+            }
+        }
+        return null;
+    }
+
+    private Settings readSettings() {
+        return new Settings(
+                environment.getProperty(ENABLED_PROPERTY, Boolean.class, true),
+                environment.getProperty(INCLUDE_PACKAGES_PROPERTY, String[].class, new String[0]),
+                environment.getProperty(EXCLUDE_PACKAGES_PROPERTY, String[].class, new String[0]));
+    }
+
+    private boolean isEnabled(Settings settings, Class<?> targetClass, @Nullable String beanName) {
+        if (!settings.enabled)
+            return false;
+        if (beanName != null) {
+            Boolean beanEnabled = environment.getProperty(String.format(BEAN_ENABLED_PROPERTY_FORMAT, beanName), Boolean.class);
+            if (beanEnabled != null)
+                return beanEnabled;
+        }
+        String className = targetClass.getName();
+        for (String excludedPackage : settings.excludePackages) {
+            if (isInPackage(className, excludedPackage))
+                return false;
+        }
+        if (settings.includePackages.length == 0)
+            return true;
+        for (String includedPackage : settings.includePackages) {
+            if (isInPackage(className, includedPackage))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isInPackage(String className, String packageName) {
+        packageName = packageName.trim();
+        return !packageName.isEmpty() && className.startsWith(packageName) &&
+                className.length() > packageName.length() && className.charAt(packageName.length()) == '.';
+    }
+
+    private static class BeanSwitch {
+        private final Class<?> targetClass;
+        @Nullable
+        private final String beanName;
+        private volatile boolean enabled;
+
+        private BeanSwitch(Class<?> targetClass, @Nullable String beanName, boolean enabled) {
+            this.targetClass = targetClass;
+            this.beanName = beanName;
+            this.enabled = enabled;
+        }
+    }
+
+    private static class Settings {
+        private final boolean enabled;
+        private final String[] includePackages;
+        private final String[] excludePackages;
+
+        private Settings(boolean enabled, String[] includePackages, String[] excludePackages) {
+            this.enabled = enabled;
+            this.includePackages = includePackages;
+            this.excludePackages = excludePackages;
+        }
+    }
+}
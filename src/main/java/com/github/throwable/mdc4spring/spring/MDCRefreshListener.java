@@ -0,0 +1,43 @@
+package com.github.throwable.mdc4spring.spring;
+
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Refreshes state derived from the environment when the context is refreshed or the environment changes
+ * (Spring Cloud <code>EnvironmentChangeEvent</code>, matched by name to avoid the dependency).
+ */
+@Component
+public class MDCRefreshListener implements ApplicationListener<ApplicationEvent> {
+    private static final String ENVIRONMENT_CHANGE_EVENT = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private final ApplicationContext applicationContext;
+    private final MDCEnablement mdcEnablement;
+    private final ExpressionEvaluator expressionEvaluator;
+
+    @Autowired
+    public MDCRefreshListener(ApplicationContext applicationContext, MDCEnablement mdcEnablement,
+                              ExpressionEvaluator expressionEvaluator)
+    {
+        this.applicationContext = applicationContext;
+        this.mdcEnablement = mdcEnablement;
+        this.expressionEvaluator = expressionEvaluator;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if ((event instanceof ContextRefreshedEvent && ((ContextRefreshedEvent) event).getApplicationContext() == applicationContext) ||
+                ENVIRONMENT_CHANGE_EVENT.equals(event.getClass().getName()))
+        {
+            mdcEnablement.refresh();
+            expressionEvaluator.refresh();
+            AnnotatedMethodMDCParamsEvaluator.refreshConstantExpressions();
+        }
+    }
+}
@@ -3,7 +3,6 @@ package com.github.throwable.mdc4spring.spring;
 import com.github.throwable.mdc4spring.CloseableMDC;
 import com.github.throwable.mdc4spring.MDC;
 import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
-import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
 import com.github.throwable.mdc4spring.util.MethodInvocationMDCParametersValues;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -12,7 +11,8 @@ import org.aspectj.lang.reflect.MethodSignature;
 import org.springframework.aop.framework.Advised;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
@@ -22,13 +22,22 @@ import java.util.Objects;
 @Component
 @SuppressWarnings("unused")
 public class WithMDCAspect {
+    /**
+     * When true, nested invocations that do not change the namespace join current MDC instead of creating a new one.
+     */
+    public static final String COALESCE_SCOPES_PROPERTY = "mdc4spring.coalesce-scopes";
+
     private final AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator;
+    private final MDCEnablement mdcEnablement;
+    private final boolean coalesceScopes;
 
     @Autowired
-    public WithMDCAspect(ExpressionEvaluator expressionEvaluator) {
-        DefaultParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
-        this.annotatedMethodMDCParamsEvaluator = new AnnotatedMethodMDCParamsEvaluator(
-                parameterNameDiscoverer::getParameterNames, expressionEvaluator);
+    public WithMDCAspect(AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator,
+                         MDCEnablement mdcEnablement, Environment environment)
+    {
+        this.annotatedMethodMDCParamsEvaluator = annotatedMethodMDCParamsEvaluator;
+        this.mdcEnablement = mdcEnablement;
+        this.coalesceScopes = environment.getProperty(COALESCE_SCOPES_PROPERTY, Boolean.class, false);
     }
 
     // https://www.faqcode4u.com/faq/214039/aspectj-pointcut-expression-match-parameter-annotations-at-any-position
@@ -43,18 +52,31 @@ public class WithMDCAspect {
             "execution(* *(.., @com.github.throwable.mdc4spring.anno.MDCParam (*), ..))"
     )
     public Object invokeWithMDC(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!mdcEnablement.isEnabled(joinPoint.getTarget()))
+            return joinPoint.proceed();
+        if (MDC.hasCurrent())
+            return invokeWithMDCParams(joinPoint);
+        try {
+            return invokeWithMDCParams(joinPoint);
+        } finally {
+            // The sample value drawn for this invocation must not be adopted by an unrelated MDC created later
+            MDC.discardPendingSampleValue();
+        }
+    }
+
+    private Object invokeWithMDCParams(ProceedingJoinPoint joinPoint) throws Throwable {
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         Object unproxiedTarget = joinPoint.getTarget();
         while (AopUtils.isAopProxy(unproxiedTarget) && unproxiedTarget instanceof Advised) {
             unproxiedTarget = ((Advised) unproxiedTarget).getTargetSource().getTarget();
         }
 
-        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
         MethodInvocationMDCParametersValues methodInvocationMdcParamValues =
                 annotatedMethodMDCParamsEvaluator.evalMethodInvocationMDCParamValues(
                         signature.getMethod(), unproxiedTarget, joinPoint.getArgs());
 
         if (methodInvocationMdcParamValues == null)
-            // Not supposed to be here: wrong PointCut configuration?
+            // @WithMDC condition is not met or not supposed to be here: wrong PointCut configuration?
             return joinPoint.proceed();
 
         final Object result;
@@ -99,7 +121,7 @@ public class WithMDCAspect {
                 (methodInvocationMdcParamValues.getMethodMDCNamespace() != null ?
                         methodInvocationMdcParamValues.getMethodMDCNamespace() : "");
 
-        try (CloseableMDC mdc = MDC.create(namespace)) {
+        try (CloseableMDC mdc = createMDC(namespace)) {
             methodInvocationMdcParamValues.getBeanMDCParamValues()
                     .forEach(mdc::put);
             methodInvocationMdcParamValues.getMethodMDCParamValues()
@@ -110,10 +132,10 @@ public class WithMDCAspect {
     }
 
     private Object invokeInSeparateMDCs(ProceedingJoinPoint joinPoint, MethodInvocationMDCParametersValues methodInvocationMdcParamValues) throws Throwable {
-        try (CloseableMDC beanMdc = MDC.create(methodInvocationMdcParamValues.getBeanMDCNamespace())) {
+        try (CloseableMDC beanMdc = createMDC(methodInvocationMdcParamValues.getBeanMDCNamespace())) {
             methodInvocationMdcParamValues.getBeanMDCParamValues()
                     .forEach(beanMdc::put);
-            try (CloseableMDC methodMdc = MDC.create(methodInvocationMdcParamValues.getMethodMDCNamespace())) {
+            try (CloseableMDC methodMdc = createMDC(methodInvocationMdcParamValues.getMethodMDCNamespace())) {
                 methodInvocationMdcParamValues.getMethodMDCParamValues()
                         .forEach(methodMdc::put);
 
@@ -122,12 +144,26 @@ public class WithMDCAspect {
         }
     }
 
+    /**
+     * A nested MDC with empty namespace has the same key prefix as current one, so when coalescing is enabled
+     * current MDC is joined: its changes are undone on close without creating and publishing a new scope.
+     */
+    private CloseableMDC createMDC(@Nullable String namespace) {
+        if (coalesceScopes && (namespace == null || namespace.isEmpty()) && MDC.hasCurrent())
+            return MDC.join();
+        return MDC.create(namespace);
+    }
+
     private Object invokeInCurrentMDC(ProceedingJoinPoint joinPoint, MethodInvocationMDCParametersValues methodInvocationMdcParamValues) throws Throwable {
-        // ??? remove parameters after method returns
-        methodInvocationMdcParamValues.getBeanMDCParamValues()
-                .forEach(MDC::param);
-        methodInvocationMdcParamValues.getMethodMDCParamValues()
-                .forEach(MDC::param);
-        return joinPoint.proceed();
+        // Parameters are put to current MDC and get back their previous values after the method returns.
+        // Changes made by the method itself are kept: it may set parameters for its caller.
+        try (CloseableMDC mdc = MDC.join()) {
+            methodInvocationMdcParamValues.getBeanMDCParamValues()
+                    .forEach(mdc::put);
+            methodInvocationMdcParamValues.getMethodMDCParamValues()
+                    .forEach(mdc::put);
+            mdc.stopRecording();
+            return joinPoint.proceed();
+        }
     }
 }
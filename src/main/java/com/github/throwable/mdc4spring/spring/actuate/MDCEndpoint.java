@@ -0,0 +1,174 @@
+package com.github.throwable.mdc4spring.spring.actuate;
+
+import com.github.throwable.mdc4spring.metrics.MicrometerMDCMetrics;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.ApplicationContext;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Actuator endpoint (<code>/actuator/mdc</code>) that exposes intercepted beans, resolved method configurations
+ * and internal caches state.
+ * <ul>
+ *     <li><code>GET</code> describes beans, resolved methods, caches and evaluation timings (when metrics are enabled)</li>
+ *     <li><code>POST</code> resolves all intercepted methods and prepares their expressions ahead of invocation</li>
+ *     <li><code>DELETE</code> clears all caches</li>
+ * </ul>
+ */
+@Endpoint(id = "mdc")
+public class MDCEndpoint {
+    private final ApplicationContext applicationContext;
+    private final AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator;
+    private final ObjectProvider<MicrometerMDCMetrics> metrics;
+
+    public MDCEndpoint(ApplicationContext applicationContext,
+                       AnnotatedMethodMDCParamsEvaluator annotatedMethodMDCParamsEvaluator,
+                       ObjectProvider<MicrometerMDCMetrics> metrics)
+    {
+        this.applicationContext = applicationContext;
+        this.annotatedMethodMDCParamsEvaluator = annotatedMethodMDCParamsEvaluator;
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public MDCDescriptor mdc() {
+        Map<String, Map<String, Object>> methods = annotatedMethodMDCParamsEvaluator.describeResolvedMethodConfigs();
+        ExpressionEvaluator expressionEvaluator = annotatedMethodMDCParamsEvaluator.getExpressionEvaluator();
+        Set<String> expressions = new TreeSet<>(expressionEvaluator.getCachedExpressions());
+        LinkedHashMap<String, Integer> cacheSizes = new LinkedHashMap<>();
+        cacheSizes.put("annotatedMethodConfigCache", methods.size());
+        cacheSizes.putAll(expressionEvaluator.getCacheSizes());
+        return new MDCDescriptor(findInterceptedBeans(), methods, expressions, cacheSizes, describeTimings());
+    }
+
+    @WriteOperation
+    public Map<String, Integer> rewarm() {
+        int methodsCount = 0;
+        for (List<Method> methods : findInterceptedMethods().values()) {
+            for (Method method : methods) {
+                annotatedMethodMDCParamsEvaluator.warmUp(method);
+                methodsCount++;
+            }
+        }
+        return Collections.singletonMap("warmedMethods", methodsCount);
+    }
+
+    @DeleteOperation
+    public void clearCaches() {
+        annotatedMethodMDCParamsEvaluator.clearCaches();
+    }
+
+    private Map<String, List<String>> findInterceptedBeans() {
+        TreeMap<String, List<String>> beans = new TreeMap<>();
+        findInterceptedMethods().forEach((beanName, methods) -> {
+            ArrayList<String> methodNames = new ArrayList<>(methods.size());
+            for (Method method : methods)
+                methodNames.add(method.getName());
+            beans.put(beanName, methodNames);
+        });
+        return beans;
+    }
+
+    private Map<String, List<Method>> findInterceptedMethods() {
+        LinkedHashMap<String, List<Method>> interceptedMethods = new LinkedHashMap<>();
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> beanType = applicationContext.getType(beanName, false);
+            if (beanType == null)
+                continue;
+            ArrayList<Method> methods = new ArrayList<>();
+            for (Method method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(beanType),
+                    ReflectionUtils.USER_DECLARED_METHODS)) {
+                if (AnnotatedMethodMDCParamsEvaluator.isMDCAnnotated(method))
+                    methods.add(method);
+            }
+            if (!methods.isEmpty())
+                interceptedMethods.put(beanName, methods);
+        }
+        return interceptedMethods;
+    }
+
+    @Nullable
+    private Map<String, Map<String, Object>> describeTimings() {
+        MicrometerMDCMetrics mdcMetrics = metrics.getIfAvailable();
+        if (mdcMetrics == null)
+            return null;
+        TreeMap<String, Map<String, Object>> timings = new TreeMap<>();
+        mdcMetrics.getMethodTimers().forEach((method, timer) -> {
+            LinkedHashMap<String, Object> timing = new LinkedHashMap<>();
+            timing.put("count", timer.count());
+            timing.put("meanMs", timer.mean(TimeUnit.MILLISECONDS));
+            timing.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            timings.put(method.getDeclaringClass().getName() + "/" + method.getName(), timing);
+        });
+        return timings;
+    }
+
+    /**
+     * Description of the library state.
+     */
+    public static class MDCDescriptor {
+        private final Map<String, List<String>> beans;
+        private final Map<String, Map<String, Object>> methods;
+        private final Set<String> expressions;
+        private final Map<String, Integer> cacheSizes;
+        @Nullable private final Map<String, Map<String, Object>> timings;
+
+        MDCDescriptor(Map<String, List<String>> beans, Map<String, Map<String, Object>> methods,
+                      Set<String> expressions, Map<String, Integer> cacheSizes,
+                      @Nullable Map<String, Map<String, Object>> timings)
+        {
+            this.beans = beans;
+            this.methods = methods;
+            this.expressions = expressions;
+            this.cacheSizes = cacheSizes;
+            this.timings = timings;
+        }
+
+        /**
+         * @return intercepted methods by bean name
+         */
+        public Map<String, List<String>> getBeans() {
+            return beans;
+        }
+
+        /**
+         * @return resolved method configurations by method id
+         */
+        public Map<String, Map<String, Object>> getMethods() {
+            return methods;
+        }
+
+        /**
+         * @return parsed and cached expressions
+         */
+        public Set<String> getExpressions() {
+            return expressions;
+        }
+
+        /**
+         * @return internal caches sizes
+         */
+        public Map<String, Integer> getCacheSizes() {
+            return cacheSizes;
+        }
+
+        /**
+         * @return parameters evaluation timings by method id, null when metrics are disabled
+         */
+        @Nullable
+        public Map<String, Map<String, Object>> getTimings() {
+            return timings;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.throwable.mdc4spring.spring.messaging;
+
+import com.github.throwable.mdc4spring.MDC;
+import org.springframework.lang.NonNull;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.core.MessagePostProcessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+
+/**
+ * Copies current MDC parameters, as published to the logger MDC, into headers of outgoing messages.
+ * Mapped parameters are written to their configured headers, others to prefixed headers. Headers already present in the message are never overwritten.
+ * <p>
+ * May be registered as a channel interceptor or passed as a post-processor to
+ * <code>MessageSendingOperations.convertAndSend()</code>.
+ */
+public class MDCMessageHeadersPropagator implements ChannelInterceptor, MessagePostProcessor {
+    private final MessageHeadersMapping mapping;
+
+    public MDCMessageHeadersPropagator(MDCMessagingProperties properties) {
+        this.mapping = new MessageHeadersMapping(properties);
+    }
+
+    @Override
+    public Message<?> preSend(@NonNull Message<?> message, @NonNull MessageChannel channel) {
+        return postProcessMessage(message);
+    }
+
+    @NonNull
+    @Override
+    public Message<?> postProcessMessage(@NonNull Message<?> message) {
+        if (!MDC.hasCurrent())
+            return message;
+        MessageBuilder<?>[] builder = new MessageBuilder<?>[1];
+        // Headers carry the values as they were published to the logger MDC, formatted and truncated
+        MDC.forEachPublishedValue((name, value) -> {
+            if (value == null)
+                return;
+            String headerName = mapping.encodeKey(name);
+            if (headerName == null || message.getHeaders().containsKey(headerName))
+                return;
+            if (builder[0] == null)
+                builder[0] = MessageBuilder.fromMessage(message);
+            builder[0].setHeader(headerName, value);
+        });
+        return builder[0] != null ? builder[0].build() : message;
+    }
+}
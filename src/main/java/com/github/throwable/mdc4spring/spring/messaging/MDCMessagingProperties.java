@@ -0,0 +1,53 @@
+package com.github.throwable.mdc4spring.spring.messaging;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of MDC parameters carried by message headers.
+ * Applies both to incoming <code>Message</code> arguments annotated with <code>@MDCParam</code>
+ * and to outgoing messages post-processed by {@link MDCMessageHeadersPropagator}.
+ */
+@ConfigurationProperties(prefix = "mdc4spring.messaging")
+public class MDCMessagingProperties {
+    /**
+     * Enable message headers support.
+     */
+    private boolean enabled = true;
+    /**
+     * Message headers mapped to MDC parameters: header name to MDC key,
+     * e.g. <code>mdc4spring.messaging.headers[x-correlation-id]=correlationId</code>.
+     */
+    private Map<String, String> headers = new LinkedHashMap<>();
+    /**
+     * Prefix of message headers that carry other MDC parameters, e.g. <code>mdc.</code>. Empty by default:
+     * only the mapped headers are propagated, so that message producers can not inject arbitrary MDC parameters.
+     */
+    private String headerPrefix = "";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public String getHeaderPrefix() {
+        return headerPrefix;
+    }
+
+    public void setHeaderPrefix(String headerPrefix) {
+        this.headerPrefix = headerPrefix;
+    }
+}
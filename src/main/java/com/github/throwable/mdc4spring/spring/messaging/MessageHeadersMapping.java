@@ -0,0 +1,90 @@
+package com.github.throwable.mdc4spring.spring.messaging;
+
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Message headers to MDC parameters mapping precompiled from {@link MDCMessagingProperties} at startup.
+ * Header names of prefixed parameters are computed once per key and cached.
+ */
+class MessageHeadersMapping {
+    // Header names come from the wire, so the decoding cache must not grow indefinitely
+    private static final int MAX_CACHED_ENCODINGS = 1024;
+
+    final String[] headerNames;
+    final String[] headerKeys;
+    @Nullable final String headerPrefix;
+    private final Map<String, String> headerByKey;
+    private final ConcurrentHashMap<String, String> encodedKeys = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> decodedKeys = new ConcurrentHashMap<>();
+
+    MessageHeadersMapping(MDCMessagingProperties properties) {
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> keys = new ArrayList<>();
+        HashMap<String, String> headerByKey = new HashMap<>();
+        for (Map.Entry<String, String> header : properties.getHeaders().entrySet()) {
+            if (isEmpty(header.getKey()) || isEmpty(header.getValue()))
+                continue;
+            names.add(header.getKey());
+            keys.add(header.getValue());
+            headerByKey.putIfAbsent(header.getValue(), header.getKey());
+        }
+        this.headerNames = names.toArray(new String[0]);
+        this.headerKeys = keys.toArray(new String[0]);
+        this.headerByKey = headerByKey;
+        this.headerPrefix = isEmpty(properties.getHeaderPrefix()) ? null : properties.getHeaderPrefix();
+    }
+
+    /**
+     * @param key MDC parameter full name
+     * @return name of the header that carries it or null if parameter must not be propagated
+     */
+    @Nullable
+    String encodeKey(String key) {
+        String headerName = headerByKey.get(key);
+        if (headerName != null || headerPrefix == null)
+            return headerName;
+        headerName = encodedKeys.get(key);
+        if (headerName == null) {
+            headerName = headerPrefix + key;
+            if (encodedKeys.size() < MAX_CACHED_ENCODINGS)
+                encodedKeys.put(key, headerName);
+        }
+        return headerName;
+    }
+
+    /**
+     * @param headerName header name
+     * @return MDC parameter name carried by prefixed header or null if the header is not prefixed
+     */
+    @Nullable
+    String decodeKey(String headerName) {
+        if (headerPrefix == null || !headerName.startsWith(headerPrefix))
+            return null;
+        String key = decodedKeys.get(headerName);
+        if (key == null) {
+            key = headerName.substring(headerPrefix.length());
+            if (decodedKeys.size() < MAX_CACHED_ENCODINGS)
+                decodedKeys.put(headerName, key);
+        }
+        return key;
+    }
+
+    /**
+     * Brokers like Kafka deliver unmapped headers as raw bytes.
+     * @param value header value
+     * @return value suitable for MDC
+     */
+    static Object decodeValue(Object value) {
+        return value instanceof byte[] ? new String((byte[]) value, StandardCharsets.UTF_8) : value;
+    }
+
+    private static boolean isEmpty(@Nullable String value) {
+        return value == null || value.isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.throwable.mdc4spring.spring.messaging;
+
+import com.github.throwable.mdc4spring.util.ArgumentMDCParamsExtractor;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+
+import java.util.Map;
+
+/**
+ * Extracts MDC parameters from headers of <code>Message</code> arguments annotated with <code>@MDCParam</code>:
+ * <pre>
+ * &#64;KafkaListener(topics = "orders")
+ * public void onOrder(&#64;MDCParam Message&lt;Order&gt; message) {
+ *     ...
+ * }
+ * </pre>
+ * The message itself is put under the argument name as any other argument. Mapped headers are put under their
+ * configured MDC keys, prefixed headers (when a prefix is configured) under their names without prefix.
+ */
+public class MessageMDCParamsExtractor implements ArgumentMDCParamsExtractor {
+    private final MessageHeadersMapping mapping;
+
+    public MessageMDCParamsExtractor(MDCMessagingProperties properties) {
+        this.mapping = new MessageHeadersMapping(properties);
+    }
+
+    @Override
+    public boolean supports(Class<?> argumentType) {
+        return Message.class.isAssignableFrom(argumentType);
+    }
+
+    @Override
+    public void extract(@Nullable Object argument, Map<String, Object> params) {
+        if (!(argument instanceof Message))
+            return;
+        MessageHeaders headers = ((Message<?>) argument).getHeaders();
+        for (int i = 0; i < mapping.headerNames.length; i++) {
+            Object value = headers.get(mapping.headerNames[i]);
+            if (value != null)
+                params.put(mapping.headerKeys[i], MessageHeadersMapping.decodeValue(value));
+        }
+        if (mapping.headerPrefix != null) {
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                String key = mapping.decodeKey(header.getKey());
+                if (key != null && header.getValue() != null)
+                    params.put(key, MessageHeadersMapping.decodeValue(header.getValue()));
+            }
+        }
+    }
+}
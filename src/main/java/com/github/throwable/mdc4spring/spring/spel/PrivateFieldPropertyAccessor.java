@@ -1,17 +1,18 @@
 package com.github.throwable.mdc4spring.spring.spel;
 
+import com.github.throwable.mdc4spring.metrics.MDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
 import org.springframework.expression.AccessException;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.TypedValue;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.function.Function;
-import java.util.function.Supplier;
 
 class PrivateFieldPropertyAccessor implements PropertyAccessor {
     private final static ConcurrentHashMap<String, Accessor> resolvedAccessors = new ConcurrentHashMap<>();
@@ -26,6 +27,14 @@ class PrivateFieldPropertyAccessor implements PropertyAccessor {
         this.clazz = clazz;
     }
 
+    static int getResolvedAccessorsCount() {
+        return resolvedAccessors.size();
+    }
+
+    static void clearResolvedAccessors() {
+        resolvedAccessors.clear();
+    }
+
     @Override
     public Class<?>[] getSpecificTargetClasses() {
         return new Class[] {clazz};
@@ -58,63 +67,71 @@ class PrivateFieldPropertyAccessor implements PropertyAccessor {
     private static Accessor resolveAccessor(Class<?> clazz, String name) throws AccessException {
         String accessorId = clazz.getName() + "/" + name;
         Accessor accessor = resolvedAccessors.get(accessorId);
+        if (accessor != null) {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.RESOLVED_ACCESSORS_CACHE, true);
+            return accessor;
+        }
 
-        if (accessor == null) {
-            for (Class<?> aClass = clazz; !Object.class.equals(aClass); aClass = aClass.getSuperclass()) {
-                // Try to find accessor field
-                try {
-                    Field propertyField = aClass.getDeclaredField(name);
-                    propertyField.setAccessible(true);
-                    accessor = target -> {
-                        try {
-                            return propertyField.get(target);
-                        } catch (IllegalAccessException ex) {
-                            throw new AccessException(ex.getMessage());
-                        }
-                    };
-                    break;
-                } catch (NoSuchFieldException ignore) {
-                }
-
-                // Try to find accessor method
-                String nameCapitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
-                Method accessorMethod = null;
-                try {
-                    accessorMethod = aClass.getDeclaredMethod("get" + nameCapitalized);
-                    accessorMethod.setAccessible(true);
-                } catch (NoSuchMethodException ignore) {
-                    try {
-                        accessorMethod = aClass.getDeclaredMethod("is" + nameCapitalized);
-                        if (!Boolean.class.isAssignableFrom(accessorMethod.getReturnType())) {
-                            accessorMethod = null;
-                        } else {
-                            accessorMethod.setAccessible(true);
-                        }
-                    } catch (NoSuchMethodException ignore1) {
-                    }
-                }
-
-                if (accessorMethod == null)
-                    continue;
+        // Single-flight: each accessor is resolved exactly once even if requested concurrently
+        accessor = resolvedAccessors.computeIfAbsent(accessorId, id -> {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.RESOLVED_ACCESSORS_CACHE, false);
+            return findAccessor(clazz, name);
+        });
+        if (accessor == null)
+            throw new AccessException("Property accessor or field was not found for property '" +
+                    name + " in class " + clazz.getName());
+        return accessor;
+    }
 
-                Method finalAccessorMethod = accessorMethod;
+    @Nullable
+    private static Accessor findAccessor(Class<?> clazz, String name) {
+        Accessor accessor = null;
+        for (Class<?> aClass = clazz; !Object.class.equals(aClass); aClass = aClass.getSuperclass()) {
+            // Try to find accessor field
+            try {
+                Field propertyField = aClass.getDeclaredField(name);
+                propertyField.setAccessible(true);
                 accessor = target -> {
                     try {
-                        return finalAccessorMethod.invoke(target);
-                    } catch (InvocationTargetException | IllegalAccessException ex) {
+                        return propertyField.get(target);
+                    } catch (IllegalAccessException ex) {
                         throw new AccessException(ex.getMessage());
                     }
                 };
+                break;
+            } catch (NoSuchFieldException ignore) {
             }
-        }
-        else
-            return accessor;
 
-        if (accessor == null)
-            throw new AccessException("Property accessor or field was not found for property '" +
-                    name + " in class " + clazz.getName());
+            // Try to find accessor method
+            String nameCapitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+            Method accessorMethod = null;
+            try {
+                accessorMethod = aClass.getDeclaredMethod("get" + nameCapitalized);
+                accessorMethod.setAccessible(true);
+            } catch (NoSuchMethodException ignore) {
+                try {
+                    accessorMethod = aClass.getDeclaredMethod("is" + nameCapitalized);
+                    if (!Boolean.class.isAssignableFrom(accessorMethod.getReturnType())) {
+                        accessorMethod = null;
+                    } else {
+                        accessorMethod.setAccessible(true);
+                    }
+                } catch (NoSuchMethodException ignore1) {
+                }
+            }
+
+            if (accessorMethod == null)
+                continue;
 
-        final Accessor accessorUpdated = resolvedAccessors.putIfAbsent(accessorId, accessor);
-        return accessorUpdated != null ? accessorUpdated : accessor;
+            Method finalAccessorMethod = accessorMethod;
+            accessor = target -> {
+                try {
+                    return finalAccessorMethod.invoke(target);
+                } catch (InvocationTargetException | IllegalAccessException ex) {
+                    throw new AccessException(ex.getMessage());
+                }
+            };
+        }
+        return accessor;
     }
 }
@@ -1,21 +1,36 @@
 package com.github.throwable.mdc4spring.spring.spel;
 
+import com.github.throwable.mdc4spring.metrics.MDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
 import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.SingletonBeanRegistry;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.env.Environment;
 import org.springframework.expression.*;
 import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelNode;
 import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.*;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class SpelExpressionEvaluator implements ExpressionEvaluator {
+    private static final String ENVIRONMENT_VARIABLE = "environment";
+    private static final String SYSTEM_PROPERTIES_VARIABLE = "systemProperties";
+    private static final Object NOT_SINGLETON = new Object();
+
     private static final ConcurrentHashMap<String, Expression> expressionCache = new ConcurrentHashMap<>();
 
     // SpEL parser is thead-safe
@@ -23,12 +38,13 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
     private final Environment environment;
     private final ApplicationContext applicationContext;
     private final boolean tolerateNPEs;
-
+    // Beans referenced with @beanName: singleton instances, or NOT_SINGLETON to look them up on each evaluation
+    private final ConcurrentHashMap<String, Object> resolvedBeans = new ConcurrentHashMap<>();
 
     private final BeanResolver applicationContextBeanResolver = new BeanResolver() {
         @Override
         public @NonNull Object resolve(@NonNull EvaluationContext context, @NonNull String beanName) {
-            return applicationContext.getBean(beanName);
+            return resolveBean(beanName);
         }
     };
 
@@ -66,18 +82,72 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
         this.tolerateNPEs = "true".equalsIgnoreCase(System.getProperty(ExpressionEvaluator.TOLERATE_NPE_SYSTEM_PROPERTY, "true"));
     }
 
+    @Override
+    public Set<String> getCachedExpressions() {
+        return Collections.unmodifiableSet(expressionCache.keySet());
+    }
+
+    @Override
+    public Map<String, Integer> getCacheSizes() {
+        LinkedHashMap<String, Integer> cacheSizes = new LinkedHashMap<>();
+        cacheSizes.put("expressionCache", expressionCache.size());
+        cacheSizes.put("resolvedAccessors", PrivateFieldPropertyAccessor.getResolvedAccessorsCount());
+        cacheSizes.put("resolvedBeans", resolvedBeans.size());
+        return cacheSizes;
+    }
+
+    /**
+     * Clear parsed expressions, resolved accessors and resolved beans caches.
+     */
+    @Override
+    public void clearCaches() {
+        expressionCache.clear();
+        PrivateFieldPropertyAccessor.clearResolvedAccessors();
+        resolvedBeans.clear();
+    }
+
+    /**
+     * @return names of singleton beans referenced in expressions and resolved so far
+     */
+    public Set<String> getResolvedBeanNames() {
+        HashSet<String> beanNames = new HashSet<>();
+        resolvedBeans.forEach((beanName, bean) -> {
+            if (bean != NOT_SINGLETON)
+                beanNames.add(beanName);
+        });
+        return beanNames;
+    }
+
+    /**
+     * Parse the expression and resolve singleton beans it references if they are already instantiated.
+     */
+    @Override
+    public void prepare(String expression) {
+        Expression parsedExpression;
+        try {
+            parsedExpression = parseExpression(expression);
+        } catch (ParseException ignore) {
+            // will be reported on evaluation
+            return;
+        }
+        if (parsedExpression instanceof SpelExpression)
+            resolveBeanReferences(((SpelExpression) parsedExpression).getAST());
+    }
+
+    /**
+     * Discard resolved beans: they may be replaced when the context is refreshed.
+     */
+    @Override
+    public void refresh() {
+        resolvedBeans.clear();
+    }
+
     @Override
     public Object evaluate(String expression, Object rootObject,
                            @Nullable Map<String, Object> argumentValues,
                            Map<String, Object> expressionVariables)
     {
-        Expression parsedExpression = expressionCache.get(expression);
-        if (parsedExpression == null) {
-            parsedExpression = expressionParser.parseExpression(expression);
-            final Expression expressionUpdated = expressionCache.putIfAbsent(expression, parsedExpression);
-            if (expressionUpdated != null)
-                parsedExpression = expressionUpdated;
-        }
+        Expression parsedExpression = parseExpression(expression);
 
         StandardEvaluationContext context = new StandardEvaluationContext(rootObject);
         context.addPropertyAccessor(environmentPropertyAccessor);
@@ -85,8 +155,8 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
         if (argumentValues != null)
             context.addPropertyAccessor(new PrivateFieldPropertyAccessor(rootObject.getClass()));
         context.setBeanResolver(applicationContextBeanResolver);
-        context.setVariable("environment", environment);
-        context.setVariable("systemProperties", System.getProperties());
+        context.setVariable(ENVIRONMENT_VARIABLE, environment);
+        context.setVariable(SYSTEM_PROPERTIES_VARIABLE, System.getProperties());
 
         if (argumentValues != null) {
             //context.setVariable("params", argumentValues);
@@ -104,4 +174,114 @@ public class SpelExpressionEvaluator implements ExpressionEvaluator {
             throw e;
         }
     }
+
+    @Override
+    public boolean isConstant(String expression, Set<String> staticVariables) {
+        Expression parsedExpression;
+        try {
+            parsedExpression = parseExpression(expression);
+        } catch (ParseException e) {
+            return false;
+        }
+        return parsedExpression instanceof SpelExpression &&
+                isConstant(((SpelExpression) parsedExpression).getAST(), staticVariables);
+    }
+
+    /**
+     * Only literals, operators and variables that do not depend on the invocation are allowed. Method calls,
+     * type and bean references, and any access to the root object are not.
+     */
+    private static boolean isConstant(SpelNode node, Set<String> staticVariables) {
+        if (node instanceof Literal)
+            return true;
+        if (node instanceof VariableReference) {
+            // toStringAST() is "#" + variable name
+            String variableName = node.toStringAST().substring(1);
+            return ENVIRONMENT_VARIABLE.equals(variableName) || SYSTEM_PROPERTIES_VARIABLE.equals(variableName) ||
+                    staticVariables.contains(variableName);
+        }
+        if (node instanceof CompoundExpression) {
+            // Properties and indexes are navigated from the first node's value that must not be the root object
+            for (int i = 0; i < node.getChildCount(); i++) {
+                SpelNode child = node.getChild(i);
+                boolean constant = i > 0 && (child instanceof PropertyOrFieldReference || child instanceof Indexer) ?
+                        areChildrenConstant(child, staticVariables) : isConstant(child, staticVariables);
+                if (!constant)
+                    return false;
+            }
+            return true;
+        }
+        if ((node instanceof Operator && !(node instanceof OpInc) && !(node instanceof OpDec)) ||
+                node instanceof OperatorNot || node instanceof Ternary || node instanceof Elvis ||
+                node instanceof InlineList)
+            return areChildrenConstant(node, staticVariables);
+        return false;
+    }
+
+    private static boolean areChildrenConstant(SpelNode node, Set<String> staticVariables) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!isConstant(node.getChild(i), staticVariables))
+                return false;
+        }
+        return true;
+    }
+
+    private Object resolveBean(String beanName) {
+        Object bean = resolvedBeans.get(beanName);
+        if (bean != null && bean != NOT_SINGLETON)
+            return bean;
+        Object resolvedBean = applicationContext.getBean(beanName);
+        if (bean == null)
+            resolvedBeans.put(beanName, applicationContext.isSingleton(beanName) ? resolvedBean : NOT_SINGLETON);
+        return resolvedBean;
+    }
+
+    private void resolveBeanReferences(SpelNode node) {
+        if (node instanceof BeanReference) {
+            String beanName = getBeanName((BeanReference) node);
+            if (!resolvedBeans.containsKey(beanName) && isInstantiatedSingleton(beanName))
+                resolveBean(beanName);
+        }
+        for (int i = 0; i < node.getChildCount(); i++)
+            resolveBeanReferences(node.getChild(i));
+    }
+
+    /**
+     * Beans that are not instantiated yet are resolved on first evaluation, so that preparing expressions
+     * never triggers their creation.
+     */
+    private boolean isInstantiatedSingleton(String beanName) {
+        try {
+            AutowireCapableBeanFactory beanFactory = applicationContext.getAutowireCapableBeanFactory();
+            return beanFactory instanceof SingletonBeanRegistry &&
+                    ((SingletonBeanRegistry) beanFactory).containsSingleton(beanName) &&
+                    applicationContext.isSingleton(beanName);
+        } catch (IllegalStateException e) {
+            // The context is not active
+            return false;
+        }
+    }
+
+    private static String getBeanName(BeanReference beanReference) {
+        // toStringAST() is "@" + bean name, quoted if it contains dots, or "&" + factory bean name
+        String beanName = beanReference.toStringAST();
+        if (beanName.startsWith("@"))
+            beanName = beanName.substring(1);
+        if (beanName.length() > 1 && beanName.startsWith("'") && beanName.endsWith("'"))
+            beanName = beanName.substring(1, beanName.length() - 1);
+        return beanName;
+    }
+
+    private Expression parseExpression(String expression) {
+        Expression parsedExpression = expressionCache.get(expression);
+        if (parsedExpression != null) {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.EXPRESSION_CACHE, true);
+            return parsedExpression;
+        }
+        // Single-flight: each expression is parsed exactly once even if requested concurrently
+        return expressionCache.computeIfAbsent(expression, e -> {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.EXPRESSION_CACHE, false);
+            return expressionParser.parseExpression(e);
+        });
+    }
 }
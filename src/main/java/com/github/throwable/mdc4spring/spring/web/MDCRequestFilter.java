@@ -0,0 +1,71 @@
+package com.github.throwable.mdc4spring.spring.web;
+
+import com.github.throwable.mdc4spring.CloseableMDC;
+import com.github.throwable.mdc4spring.MDC;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Servlet filter that opens a root MDC for each request with the request id, source IP, HTTP method, path and
+ * configured request headers.
+ * <p>
+ * The MDC is always closed by the thread that opened it. When the request is processed asynchronously
+ * (e.g. <code>DeferredResult</code> or <code>Callable</code> return values) the MDC is opened again for the async
+ * dispatch with the same request id.
+ */
+public class MDCRequestFilter extends OncePerRequestFilter {
+    /**
+     * Request attribute that keeps the request id between dispatches of the same request.
+     */
+    public static final String REQUEST_ID_ATTRIBUTE = MDCRequestFilter.class.getName() + ".REQUEST_ID";
+
+    private final RequestMDCMapping mapping;
+
+    public MDCRequestFilter(MDCWebProperties properties) {
+        this.mapping = new RequestMDCMapping(properties);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                    @NonNull FilterChain filterChain) throws ServletException, IOException
+    {
+        try (CloseableMDC mdc = MDC.create(mapping.namespace)) {
+            if (mapping.requestIdKey != null)
+                mdc.put(mapping.requestIdKey, resolveRequestId(request));
+            if (mapping.sourceIpKey != null)
+                mdc.put(mapping.sourceIpKey, request.getRemoteAddr());
+            if (mapping.methodKey != null)
+                mdc.put(mapping.methodKey, request.getMethod());
+            if (mapping.pathKey != null)
+                mdc.put(mapping.pathKey, request.getRequestURI());
+            for (int i = 0; i < mapping.headerNames.length; i++) {
+                String value = request.getHeader(mapping.headerNames[i]);
+                if (value != null)
+                    mdc.put(mapping.headerKeys[i], value);
+            }
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private String resolveRequestId(HttpServletRequest request) {
+        Object requestId = request.getAttribute(REQUEST_ID_ATTRIBUTE);
+        if (requestId != null)
+            return requestId.toString();
+        String newRequestId = mapping.requestIdHeader != null ? request.getHeader(mapping.requestIdHeader) : null;
+        if (newRequestId == null || newRequestId.isEmpty())
+            newRequestId = RequestMDCMapping.generateRequestId();
+        request.setAttribute(REQUEST_ID_ATTRIBUTE, newRequestId);
+        return newRequestId;
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.throwable.mdc4spring.spring.web;
+
+import com.github.throwable.mdc4spring.CloseableMDC;
+import com.github.throwable.mdc4spring.MDC;
+import org.reactivestreams.Publisher;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * WebFlux filter that opens a root MDC with the request id, source IP, HTTP method, path and configured
+ * request headers.
+ * <p>
+ * The MDC is bound to the thread that subscribes to the filter chain, so it covers the synchronous part of
+ * the request handling and is closed as soon as the subscription returns. Because reactive pipelines may continue on other threads, the same parameters are
+ * also published in exchange attributes and in the Reactor context under {@link #MDC_PARAMS_KEY}, so
+ * downstream stages can restore them with <code>MDC.with()</code>.
+ */
+public class MDCWebFilter implements WebFilter, Ordered {
+    /**
+     * Exchange attribute and Reactor context key that hold the request MDC parameters (Map&lt;String, String&gt;).
+     */
+    public static final String MDC_PARAMS_KEY = MDCWebFilter.class.getName() + ".MDC_PARAMS";
+
+    private final RequestMDCMapping mapping;
+    private final int order;
+
+    public MDCWebFilter(MDCWebProperties properties) {
+        this.mapping = new RequestMDCMapping(properties);
+        this.order = properties.getFilterOrder();
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    @Override
+    @NonNull
+    public Mono<Void> filter(@NonNull ServerWebExchange exchange, @NonNull WebFilterChain chain) {
+        Map<String, String> params = resolveParams(exchange.getRequest());
+        exchange.getAttributes().put(MDC_PARAMS_KEY, params);
+        // Keep MDC open while the chain is assembled and subscribed: this is when handlers are invoked
+        Publisher<Void> scopedChain = subscriber -> {
+            try (CloseableMDC mdc = MDC.create(mapping.namespace)) {
+                params.forEach(mdc::put);
+                Mono<Void> filtered;
+                try {
+                    filtered = chain.filter(exchange);
+                } catch (Throwable e) {
+                    // Signal synchronous failures of the chain as errors, like Mono.defer() does
+                    Exceptions.throwIfFatal(e);
+                    Operators.error(subscriber, e);
+                    return;
+                }
+                filtered.subscribe(subscriber);
+            }
+        };
+        return Mono.fromDirect(scopedChain)
+                .contextWrite(context -> context.put(MDC_PARAMS_KEY, params));
+    }
+
+    private Map<String, String> resolveParams(ServerHttpRequest request) {
+        LinkedHashMap<String, String> params = new LinkedHashMap<>((4 + mapping.headerNames.length) * 4 / 3 + 1);
+        if (mapping.requestIdKey != null) {
+            String requestId = mapping.requestIdHeader != null ?
+                    request.getHeaders().getFirst(mapping.requestIdHeader) : null;
+            if (requestId == null || requestId.isEmpty())
+                requestId = RequestMDCMapping.generateRequestId();
+            params.put(mapping.requestIdKey, requestId);
+        }
+        if (mapping.sourceIpKey != null) {
+            InetSocketAddress remoteAddress = request.getRemoteAddress();
+            if (remoteAddress != null)
+                params.put(mapping.sourceIpKey, remoteAddress.getAddress() != null ?
+                        remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString());
+        }
+        if (mapping.methodKey != null)
+            params.put(mapping.methodKey, request.getMethod().name());
+        if (mapping.pathKey != null)
+            params.put(mapping.pathKey, request.getPath().value());
+        for (int i = 0; i < mapping.headerNames.length; i++) {
+            String value = request.getHeaders().getFirst(mapping.headerNames[i]);
+            if (value != null)
+                params.put(mapping.headerKeys[i], value);
+        }
+        return Collections.unmodifiableMap(params);
+    }
+}
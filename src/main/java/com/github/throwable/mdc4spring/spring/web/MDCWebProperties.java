@@ -0,0 +1,131 @@
+package com.github.throwable.mdc4spring.spring.web;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.filter.OrderedFilter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the root MDC opened for each incoming web request.
+ * Setting any key property to an empty value excludes the corresponding parameter.
+ */
+@ConfigurationProperties(prefix = "mdc4spring.web")
+public class MDCWebProperties {
+    /**
+     * Default order of the Servlet request filter. It is the order of Spring Boot's request context filter:
+     * after the character encoding filter and before Spring Security's filter chain
+     * (<code>REQUEST_WRAPPER_FILTER_MAX_ORDER - 100</code>), so that security logging already sees the request MDC.
+     */
+    public static final int DEFAULT_FILTER_ORDER = OrderedFilter.REQUEST_WRAPPER_FILTER_MAX_ORDER - 105;
+
+    /**
+     * Open a root MDC for each incoming request.
+     */
+    private boolean enabled = true;
+    /**
+     * Namespace of the request MDC.
+     */
+    private String namespace = "";
+    /**
+     * Request header that carries the request id. When absent a new request id is generated.
+     */
+    private String requestIdHeader = "X-Request-Id";
+    /**
+     * MDC key for the request id.
+     */
+    private String requestIdKey = "requestId";
+    /**
+     * MDC key for the request source IP address.
+     */
+    private String sourceIpKey = "sourceIp";
+    /**
+     * MDC key for the request HTTP method.
+     */
+    private String methodKey = "method";
+    /**
+     * MDC key for the request path.
+     */
+    private String pathKey = "path";
+    /**
+     * Additional request headers to include in MDC: header name to MDC key,
+     * e.g. <code>mdc4spring.web.headers[X-Tenant-Id]=tenant</code>.
+     */
+    private Map<String, String> headers = new LinkedHashMap<>();
+    /**
+     * Order of the request filter.
+     */
+    private int filterOrder = DEFAULT_FILTER_ORDER;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public void setNamespace(String namespace) {
+        this.namespace = namespace;
+    }
+
+    public String getRequestIdHeader() {
+        return requestIdHeader;
+    }
+
+    public void setRequestIdHeader(String requestIdHeader) {
+        this.requestIdHeader = requestIdHeader;
+    }
+
+    public String getRequestIdKey() {
+        return requestIdKey;
+    }
+
+    public void setRequestIdKey(String requestIdKey) {
+        this.requestIdKey = requestIdKey;
+    }
+
+    public String getSourceIpKey() {
+        return sourceIpKey;
+    }
+
+    public void setSourceIpKey(String sourceIpKey) {
+        this.sourceIpKey = sourceIpKey;
+    }
+
+    public String getMethodKey() {
+        return methodKey;
+    }
+
+    public void setMethodKey(String methodKey) {
+        this.methodKey = methodKey;
+    }
+
+    public String getPathKey() {
+        return pathKey;
+    }
+
+    public void setPathKey(String pathKey) {
+        this.pathKey = pathKey;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public int getFilterOrder() {
+        return filterOrder;
+    }
+
+    public void setFilterOrder(int filterOrder) {
+        this.filterOrder = filterOrder;
+    }
+}
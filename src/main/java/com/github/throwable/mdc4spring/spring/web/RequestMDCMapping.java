@@ -0,0 +1,62 @@
+package com.github.throwable.mdc4spring.spring.web;
+
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Request to MDC parameters mapping precompiled from {@link MDCWebProperties} at startup.
+ */
+class RequestMDCMapping {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    final String namespace;
+    @Nullable final String requestIdHeader;
+    @Nullable final String requestIdKey;
+    @Nullable final String sourceIpKey;
+    @Nullable final String methodKey;
+    @Nullable final String pathKey;
+    final String[] headerNames;
+    final String[] headerKeys;
+
+    RequestMDCMapping(MDCWebProperties properties) {
+        this.namespace = properties.getNamespace() != null ? properties.getNamespace() : "";
+        this.requestIdHeader = emptyToNull(properties.getRequestIdHeader());
+        this.requestIdKey = emptyToNull(properties.getRequestIdKey());
+        this.sourceIpKey = emptyToNull(properties.getSourceIpKey());
+        this.methodKey = emptyToNull(properties.getMethodKey());
+        this.pathKey = emptyToNull(properties.getPathKey());
+        ArrayList<String> names = new ArrayList<>();
+        ArrayList<String> keys = new ArrayList<>();
+        for (Map.Entry<String, String> header : properties.getHeaders().entrySet()) {
+            if (emptyToNull(header.getKey()) == null || emptyToNull(header.getValue()) == null)
+                continue;
+            names.add(header.getKey());
+            keys.add(header.getValue());
+        }
+        this.headerNames = names.toArray(new String[0]);
+        this.headerKeys = keys.toArray(new String[0]);
+    }
+
+    /**
+     * Generate a random 64-bit request id as 16 hex digits.
+     * Unlike <code>UUID.randomUUID()</code> it does not use a shared SecureRandom.
+     * @return new request id
+     */
+    static String generateRequestId() {
+        long value = ThreadLocalRandom.current().nextLong();
+        char[] chars = new char[16];
+        for (int i = 15; i >= 0; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+}
@@ -1,28 +1,166 @@
 package com.github.throwable.mdc4spring.util;
 
+import com.github.throwable.mdc4spring.MDC;
 import com.github.throwable.mdc4spring.anno.*;
+import com.github.throwable.mdc4spring.jfr.MDCFlightRecorder;
+import com.github.throwable.mdc4spring.metrics.MDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
+import org.springframework.core.ResolvableType;
 import org.springframework.lang.Nullable;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 /**
  * Class that resolves a method MDC configuration and evaluates MDC parameters for a method invocation.
  */
 public class AnnotatedMethodMDCParamsEvaluator {
-    private static final ConcurrentHashMap<String, AnnotatedMethodConfig> annotatedMethodConfigCache = new ConcurrentHashMap<>();
+    /**
+     * Number of consecutive failures after which an expression of a method is no longer evaluated until the retry backoff expires.
+     * Default value is 10, 0 disables the circuit breaker.
+     */
+    public static final String EXPRESSION_FAILURE_THRESHOLD_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.expressionFailureThreshold";
+    /**
+     * Time in milliseconds to wait before a failing expression is evaluated again. Default value is 30000.
+     */
+    public static final String EXPRESSION_RETRY_BACKOFF_SYSTEM_PROPERTY = "com.github.throwable.mdc4spring.expressionRetryBackoffMillis";
+    /**
+     * Value of parameters whose expression is not evaluated because it failed repeatedly.
+     */
+    public static final String EXPRESSION_SUSPENDED_VALUE = "#EVALUATION ERROR#: suspended after repeated failures";
+    static final String EVALUATION_ERROR_PREFIX = "#EVALUATION ERROR#: ";
+
+    // Cached bean-level parameter values by bean instance, released with the bean
+    // Beans are compared by identity: their equals() and hashCode() may be overridden
+    private static final WeakIdentityMap<CachedBeanParams> cachedBeanParams = new WeakIdentityMap<>();
+    // Values of constant expressions folded before this generation are stale
+    private static final AtomicInteger constantExpressionsGeneration = new AtomicInteger();
 
     private final Function<Method, String[]> argumentsNamesDiscoverer; // = new DefaultParameterNameDiscoverer();
     private final ExpressionEvaluator expressionEvaluator;
+    private final List<ArgumentMDCParamsExtractor> argumentExtractors;
+    // Configurations depend on the argument extractors and the expression evaluator of this instance
+    private final ConcurrentHashMap<String, AnnotatedMethodConfig> annotatedMethodConfigCache = new ConcurrentHashMap<>();
+    private final int expressionFailureThreshold;
+    private final long expressionRetryBackoffNanos;
 
     public AnnotatedMethodMDCParamsEvaluator(Function<Method, String[]> argumentsNamesDiscoverer,
                                              ExpressionEvaluator expressionEvaluator)
+    {
+        this(argumentsNamesDiscoverer, expressionEvaluator, Collections.emptyList());
+    }
+
+    /**
+     * @param argumentsNamesDiscoverer method argument names discoverer
+     * @param expressionEvaluator expression evaluator
+     * @param argumentExtractors extractors for arguments of well-known types, the first one that supports
+     *                           an argument type is used
+     */
+    public AnnotatedMethodMDCParamsEvaluator(Function<Method, String[]> argumentsNamesDiscoverer,
+                                             ExpressionEvaluator expressionEvaluator,
+                                             List<ArgumentMDCParamsExtractor> argumentExtractors)
     {
         this.argumentsNamesDiscoverer = argumentsNamesDiscoverer;
         this.expressionEvaluator = expressionEvaluator;
+        this.argumentExtractors = new ArrayList<>(argumentExtractors);
+        this.expressionFailureThreshold = Integer.getInteger(EXPRESSION_FAILURE_THRESHOLD_SYSTEM_PROPERTY, 10);
+        this.expressionRetryBackoffNanos = TimeUnit.MILLISECONDS.toNanos(
+                Long.getLong(EXPRESSION_RETRY_BACKOFF_SYSTEM_PROPERTY, 30000));
+    }
+
+    /**
+     * Check if the method or its declaring class define any MDC annotation.
+     * @param method method to check
+     * @return true if method invocations must be intercepted
+     */
+    public static boolean isMDCAnnotated(Method method) {
+        Class<?> clazz = method.getDeclaringClass();
+        if (clazz.isAnnotationPresent(WithMDC.class) || clazz.isAnnotationPresent(MDCParam.class) ||
+                clazz.isAnnotationPresent(MDCParams.class))
+            return true;
+        if (method.isAnnotationPresent(WithMDC.class) || method.isAnnotationPresent(MDCParam.class) ||
+                method.isAnnotationPresent(MDCParams.class) || method.isAnnotationPresent(MDCOutParam.class) ||
+                method.isAnnotationPresent(MDCOutParams.class))
+            return true;
+        for (Annotation[] argumentAnnotations : method.getParameterAnnotations()) {
+            for (Annotation annotation : argumentAnnotations) {
+                if (MDCParam.class.equals(annotation.annotationType()))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Describe method configurations resolved so far.
+     * @return method configuration descriptions by method id
+     */
+    public Map<String, Map<String, Object>> describeResolvedMethodConfigs() {
+        TreeMap<String, Map<String, Object>> descriptions = new TreeMap<>();
+        annotatedMethodConfigCache.forEach((methodId, config) -> descriptions.put(methodId, config.describe()));
+        return descriptions;
+    }
+
+    /**
+     * Clear the cache of resolved method configurations, cached bean-level parameter values
+     * and the expression evaluator's caches.
+     */
+    public void clearCaches() {
+        annotatedMethodConfigCache.clear();
+        cachedBeanParams.clear();
+        expressionEvaluator.clearCaches();
+    }
+
+    /**
+     * @return expression evaluator used by this instance
+     */
+    public ExpressionEvaluator getExpressionEvaluator() {
+        return expressionEvaluator;
+    }
+
+    /**
+     * Discard folded values of constant expressions (those that depend only on the environment and static variables),
+     * so that they are evaluated again on the next invocation. Must be called when the environment changes.
+     */
+    public static void refreshConstantExpressions() {
+        constantExpressionsGeneration.incrementAndGet();
+    }
+
+    /**
+     * Resolve the method configuration and prepare all its expressions ahead of the first invocation.
+     * @param method method to prepare
+     */
+    public void warmUp(Method method) {
+        AnnotatedMethodConfig annotatedMethodConfig = resolveAnnotatedMethodConfig(method);
+        if (annotatedMethodConfig.getBeanMDCAnno() != null)
+            prepareExpression(annotatedMethodConfig.getBeanMDCAnno().condition());
+        if (annotatedMethodConfig.getMethodMDCAnno() != null)
+            prepareExpression(annotatedMethodConfig.getMethodMDCAnno().condition());
+        for (MDCParam parameter : annotatedMethodConfig.getBeanMDCParamAnnotations())
+            prepareParamExpressions(parameter);
+        for (MDCParam parameter : annotatedMethodConfig.getMdcParamByArgumentName().values())
+            prepareParamExpressions(parameter);
+        for (MDCParam parameter : annotatedMethodConfig.getExtractedArgumentParams())
+            prepareParamExpressions(parameter);
+        for (MDCParam parameter : annotatedMethodConfig.getMethodMDCParamAnnotations())
+            prepareParamExpressions(parameter);
+        for (MDCOutParam parameter : annotatedMethodConfig.getMethodMDCParamOutAnnotations())
+            prepareExpression(parameter.eval());
+    }
+
+    private void prepareParamExpressions(MDCParam parameter) {
+        prepareExpression(parameter.condition());
+        prepareExpression(parameter.eval());
+    }
+
+    private void prepareExpression(String expression) {
+        if (!expression.isEmpty())
+            expressionEvaluator.prepare(expression);
     }
 
     /**
@@ -30,7 +168,8 @@ public class AnnotatedMethodMDCParamsEvaluator {
      * @param method method to invoke
      * @param target target object instance
      * @param args method arguments values
-     * @return method's MDC configuration and evaluated parameters with their values
+     * @return method's MDC configuration and evaluated parameters with their values,
+     *      or null if the method is not MDC-annotated or its <code>{@literal @}WithMDC</code> condition is not met
      */
     @Nullable
     public MethodInvocationMDCParametersValues evalMethodInvocationMDCParamValues(
@@ -39,19 +178,31 @@ public class AnnotatedMethodMDCParamsEvaluator {
         AnnotatedMethodConfig annotatedMethodConfig = resolveAnnotatedMethodConfig(method);
         if (annotatedMethodConfig == null)
             return null;
+        if (annotatedMethodConfig.hasScopeCondition() && !isScopeConditionMet(annotatedMethodConfig, target, args))
+            return null;
+
+        final MDCMetrics metrics = MDCMetricsHolder.getMetrics();
+        final long startTime = metrics.isEnabled() && metrics.sampleTiming() ? System.nanoTime() : 0;
 
         Map<String, Object> beanMDCParamValues = Collections.emptyMap();
         if (!annotatedMethodConfig.getBeanMDCParamAnnotations().isEmpty()) {
-            beanMDCParamValues = new HashMap<>(annotatedMethodConfig.getBeanMDCParamAnnotations().size() * 4 / 3 + 1);
+            List<MDCParam> beanParams = annotatedMethodConfig.getBeanMDCParamAnnotations();
+            beanMDCParamValues = new HashMap<>(beanParams.size() * 4 / 3 + 1);
+            SharedExpressions sharedExpressions = annotatedMethodConfig.getBeanParamsSharedExpressions();
+            Object[] sharedValues = sharedExpressions.newValues();
 
-            for (MDCParam parameter : annotatedMethodConfig.getBeanMDCParamAnnotations()) {
+            for (int i = 0; i < beanParams.size(); i++) {
+                MDCParam parameter = beanParams.get(i);
                 String paramName = !parameter.name().isEmpty() ? parameter.name() : parameter.value();
-                if (paramName.isEmpty())
+                if (paramName.isEmpty() || !isSampled(parameter) ||
+                        !isConditionMet(parameter.condition(), sharedExpressions.getConditionSlot(i), sharedValues,
+                                target, null, annotatedMethodConfig))
                     continue;
                 if (!parameter.eval().isEmpty()) {
-                    Object expressionResult = evaluateExpression(parameter.eval(), target, null,
-                            annotatedMethodConfig.getExpressionStaticVariables());
-                    beanMDCParamValues.put(paramName, expressionResult);
+                    int evalSlot = sharedExpressions.getEvalSlot(i);
+                    beanMDCParamValues.put(paramName, parameter.cache() == CachePolicy.NONE ?
+                            evaluateBeanParam(annotatedMethodConfig, parameter, target, evalSlot, sharedValues) :
+                            cachedBeanParam(annotatedMethodConfig, parameter, target, evalSlot, sharedValues));
                 } else {
                     beanMDCParamValues.put(paramName, null);
                 }
@@ -69,13 +220,33 @@ public class AnnotatedMethodMDCParamsEvaluator {
                 String paramName = argumentParam.getKey();
                 MDCParam parameter = argumentParam.getValue();
                 Object argumentValue = args[annotatedMethodConfig.getArgumentParamIndex(paramName)];
+                if (!isSampled(parameter) ||
+                        !isConditionMet(parameter.condition(), argumentValue, null, annotatedMethodConfig))
+                    continue;
                 Object expressionResult;
                 if (parameter.eval().isEmpty())
                     expressionResult = argumentValue;
                 else
                     expressionResult = evaluateExpression(parameter.eval(), argumentValue, null,
-                            annotatedMethodConfig.getExpressionStaticVariables());
-                methodMDCParamValues.put(paramName, expressionResult);
+                            annotatedMethodConfig);
+                methodMDCParamValues.put(paramName, summarize(annotatedMethodConfig, parameter, expressionResult));
+            }
+        }
+
+        if (annotatedMethodConfig.getExtractedArgumentIndexes().length > 0) {
+            if (methodMDCParamValues == null)
+                methodMDCParamValues = new HashMap<>();
+            int[] argumentIndexes = annotatedMethodConfig.getExtractedArgumentIndexes();
+            MDCParam[] extractedParams = annotatedMethodConfig.getExtractedArgumentParams();
+            ArgumentMDCParamsExtractor[] extractors = annotatedMethodConfig.getArgumentExtractors();
+            for (int i = 0; i < argumentIndexes.length; i++) {
+                Object argumentValue = args[argumentIndexes[i]];
+                if (isSampled(extractedParams[i]) &&
+                        isConditionMet(extractedParams[i].condition(), argumentValue, null, annotatedMethodConfig)) {
+                    // The argument itself is kept as any other argument parameter
+                    methodMDCParamValues.put(annotatedMethodConfig.getArgumentNames().get(argumentIndexes[i]), argumentValue);
+                    extractors[i].extract(argumentValue, methodMDCParamValues);
+                }
             }
         }
 
@@ -89,20 +260,27 @@ public class AnnotatedMethodMDCParamsEvaluator {
             for (int i = 0; i < annotatedMethodConfig.getArgumentNames().size(); i++) {
                 String paramName = annotatedMethodConfig.getArgumentNames().get(i);
                 Object argumentValue;
-                if (methodMDCParamValues.containsKey(paramName))
+                // Expressions see summarized arguments as they are
+                if (methodMDCParamValues.containsKey(paramName) && !isSummarizedArgument(annotatedMethodConfig, paramName))
                     argumentValue = methodMDCParamValues.get(paramName);
                 else argumentValue = args[i];
                 argumentValues.put(paramName, argumentValue);
             }
 
-            for (MDCParam parameter : annotatedMethodConfig.getMethodMDCParamAnnotations()) {
+            List<MDCParam> methodParams = annotatedMethodConfig.getMethodMDCParamAnnotations();
+            SharedExpressions sharedExpressions = annotatedMethodConfig.getMethodParamsSharedExpressions();
+            Object[] sharedValues = sharedExpressions.newValues();
+            for (int i = 0; i < methodParams.size(); i++) {
+                MDCParam parameter = methodParams.get(i);
                 String paramName = !parameter.name().isEmpty() ? parameter.name() : parameter.value();
-                if (paramName.isEmpty())
+                if (paramName.isEmpty() || !isSampled(parameter) ||
+                        !isConditionMet(parameter.condition(), sharedExpressions.getConditionSlot(i), sharedValues,
+                                target, argumentValues, annotatedMethodConfig))
                     continue;
                 if (!parameter.eval().isEmpty()) {
-                    Object expressionResult = evaluateExpression(parameter.eval(), target, argumentValues,
-                            annotatedMethodConfig.getExpressionStaticVariables());
-                    methodMDCParamValues.put(paramName, expressionResult);
+                    Object expressionResult = evaluateSharedExpression(parameter.eval(), sharedExpressions.getEvalSlot(i),
+                            sharedValues, target, argumentValues, annotatedMethodConfig);
+                    methodMDCParamValues.put(paramName, summarize(annotatedMethodConfig, parameter, expressionResult));
                 }
                 else
                     methodMDCParamValues.put(paramName, null);
@@ -114,6 +292,9 @@ public class AnnotatedMethodMDCParamsEvaluator {
 
         //methodMDCParamValues.keySet().removeAll(excludeKeys);
 
+        if (startTime != 0)
+            metrics.recordParamsEvaluation(method, System.nanoTime() - startTime);
+
         return new MethodInvocationMDCParametersValues(
                 annotatedMethodConfig.getBeanMDCAnno() != null ? annotatedMethodConfig.getBeanMDCAnno().name() : null,
                 beanMDCParamValues,
@@ -122,6 +303,82 @@ public class AnnotatedMethodMDCParamsEvaluator {
                 !annotatedMethodConfig.getMethodMDCParamOutAnnotations().isEmpty());
     }
 
+    @Nullable
+    private Object evaluateBeanParam(AnnotatedMethodConfig annotatedMethodConfig, MDCParam parameter, Object target,
+                                     int evalSlot, @Nullable Object[] sharedValues)
+    {
+        Object expressionResult = evaluateSharedExpression(parameter.eval(), evalSlot, sharedValues, target, null,
+                annotatedMethodConfig);
+        return summarize(annotatedMethodConfig, parameter, expressionResult);
+    }
+
+    @Nullable
+    private Object cachedBeanParam(AnnotatedMethodConfig annotatedMethodConfig, MDCParam parameter, Object target,
+                                   int evalSlot, @Nullable Object[] sharedValues)
+    {
+        CachedBeanParams beanParams = cachedBeanParams.computeIfAbsent(target, CachedBeanParams::new);
+        CachedBeanParam cached = beanParams.get(parameter);
+        final boolean ttl = parameter.cache() == CachePolicy.TTL;
+        final long now = ttl ? System.nanoTime() : 0;
+        if (cached != null && (!ttl || now - cached.expiresAtNanos < 0))
+            return cached.value;
+        Object value = evaluateBeanParam(annotatedMethodConfig, parameter, target, evalSlot, sharedValues);
+        if (!(value instanceof String && ((String) value).startsWith(EVALUATION_ERROR_PREFIX)))
+            beanParams.put(parameter, new CachedBeanParam(value,
+                    ttl ? now + TimeUnit.MILLISECONDS.toNanos(parameter.cacheTtlMillis()) : 0));
+        return value;
+    }
+
+    private boolean isScopeConditionMet(AnnotatedMethodConfig annotatedMethodConfig, Object target, Object[] args) {
+        HashMap<String, Object> argumentValues = new HashMap<>(annotatedMethodConfig.getArgumentNames().size() * 4 / 3 + 1);
+        for (int i = 0; i < annotatedMethodConfig.getArgumentNames().size(); i++)
+            argumentValues.put(annotatedMethodConfig.getArgumentNames().get(i), args[i]);
+        WithMDC beanMDCAnno = annotatedMethodConfig.getBeanMDCAnno();
+        WithMDC methodMDCAnno = annotatedMethodConfig.getMethodMDCAnno();
+        return (beanMDCAnno == null || isConditionMet(beanMDCAnno.condition(), target, argumentValues, annotatedMethodConfig)) &&
+                (methodMDCAnno == null || isConditionMet(methodMDCAnno.condition(), target, argumentValues, annotatedMethodConfig));
+    }
+
+    /**
+     * A condition is met when it is not defined or evaluates to <code>true</code>. Failed conditions are not met.
+     */
+    private boolean isConditionMet(String condition, Object root, @Nullable Map<String, Object> argumentValues,
+                                   AnnotatedMethodConfig annotatedMethodConfig)
+    {
+        return isConditionMet(condition, -1, null, root, argumentValues, annotatedMethodConfig);
+    }
+
+    private boolean isConditionMet(String condition, int slot, @Nullable Object[] sharedValues, Object root,
+                                   @Nullable Map<String, Object> argumentValues,
+                                   AnnotatedMethodConfig annotatedMethodConfig)
+    {
+        if (condition.isEmpty())
+            return true;
+        Object result = evaluateSharedExpression(condition, slot, sharedValues, root, argumentValues,
+                annotatedMethodConfig);
+        return Boolean.TRUE.equals(result) || "true".equals(result);
+    }
+
+    private static boolean isSampled(MDCParam parameter) {
+        double sampleRate = parameter.sampleRate();
+        return sampleRate >= 1 || MDC.isSampled(sampleRate);
+    }
+
+    @Nullable
+    private static Object summarize(AnnotatedMethodConfig annotatedMethodConfig, MDCParam parameter,
+                                    @Nullable Object value)
+    {
+        if (annotatedMethodConfig.getSummarizers().isEmpty())
+            return value;
+        ValueSummarizer summarizer = annotatedMethodConfig.getSummarizers().get(parameter);
+        return summarizer != null ? summarizer.summarize(value) : value;
+    }
+
+    private static boolean isSummarizedArgument(AnnotatedMethodConfig annotatedMethodConfig, String paramName) {
+        return !annotatedMethodConfig.getSummarizers().isEmpty() && annotatedMethodConfig.getSummarizers()
+                .containsKey(annotatedMethodConfig.getMdcParamByArgumentName().get(paramName));
+    }
+
     @Nullable
     public Map<String, Object> evaluateMethodInvocationOutputParams(Method method, Object result) {
         AnnotatedMethodConfig annotatedMethodConfig = resolveAnnotatedMethodConfig(method);
@@ -132,8 +389,12 @@ public class AnnotatedMethodMDCParamsEvaluator {
 
         if (!annotatedMethodConfig.getMethodMDCParamOutAnnotations().isEmpty()) {
             methodMDCParamOutValues = new HashMap<>(annotatedMethodConfig.getMethodMDCParamOutAnnotations().size() * 4 / 3 + 1);
+            List<MDCOutParam> outParams = annotatedMethodConfig.getMethodMDCParamOutAnnotations();
+            SharedExpressions sharedExpressions = annotatedMethodConfig.getOutParamsSharedExpressions();
+            Object[] sharedValues = sharedExpressions.newValues();
             int i = 0;
-            for (MDCOutParam parameter : annotatedMethodConfig.getMethodMDCParamOutAnnotations()) {
+            for (int j = 0; j < outParams.size(); j++) {
+                MDCOutParam parameter = outParams.get(j);
                 String paramName = !parameter.name().isEmpty() ? parameter.name() : parameter.value();
                 if (paramName.isEmpty()) {
                     if (annotatedMethodConfig.getMethodMDCParamAnnotations().size() == 1)
@@ -145,8 +406,8 @@ public class AnnotatedMethodMDCParamsEvaluator {
                 if (parameter.eval().isEmpty()) {
                     methodMDCParamOutValues.put(paramName, result);
                 } else {
-                    Object expressionResult = evaluateExpression(parameter.eval(), result, null,
-                            annotatedMethodConfig.getExpressionStaticVariables());
+                    Object expressionResult = evaluateSharedExpression(parameter.eval(), sharedExpressions.getEvalSlot(j),
+                            sharedValues, result, null, annotatedMethodConfig);
                     methodMDCParamOutValues.put(paramName, expressionResult);
                 }
             }
@@ -154,92 +415,225 @@ public class AnnotatedMethodMDCParamsEvaluator {
         return methodMDCParamOutValues;
     }
 
+    /**
+     * Evaluate an expression that may occur several times in a group of parameters. Its value is kept in
+     * <code>sharedValues</code> at <code>slot</code> and reused by the other occurrences of the same invocation.
+     */
+    private Object evaluateSharedExpression(String expression, int slot, @Nullable Object[] sharedValues, Object root,
+                                            @Nullable Map<String, Object> argumentValues,
+                                            AnnotatedMethodConfig annotatedMethodConfig)
+    {
+        if (slot < 0 || sharedValues == null)
+            return evaluateExpression(expression, root, argumentValues, annotatedMethodConfig);
+        Object value = sharedValues[slot];
+        if (value == SharedExpressions.NOT_EVALUATED) {
+            value = evaluateExpression(expression, root, argumentValues, annotatedMethodConfig);
+            sharedValues[slot] = value;
+        }
+        return value;
+    }
+
     private Object evaluateExpression(String expression, Object root,
                                       @Nullable Map<String, Object> argumentValues,
-                                      Map<String, Object> environmentVariables) {
+                                      AnnotatedMethodConfig annotatedMethodConfig) {
+        if (!annotatedMethodConfig.isConstantExpression(expression))
+            return doEvaluateExpression(expression, root, argumentValues, annotatedMethodConfig);
+        int generation = constantExpressionsGeneration.get();
+        FoldedExpression folded = annotatedMethodConfig.getFoldedExpression(expression);
+        if (folded != null && folded.generation == generation)
+            return folded.value;
+        Object value = doEvaluateExpression(expression, root, argumentValues, annotatedMethodConfig);
+        // Failures are not folded: the circuit breaker decides when to retry
+        if (!(value instanceof String && ((String) value).startsWith(EVALUATION_ERROR_PREFIX)))
+            annotatedMethodConfig.foldExpression(expression, new FoldedExpression(value, generation));
+        return value;
+    }
+
+    private Object doEvaluateExpression(String expression, Object root,
+                                        @Nullable Map<String, Object> argumentValues,
+                                        AnnotatedMethodConfig annotatedMethodConfig) {
+        ExpressionCircuitBreaker breaker = annotatedMethodConfig.getExpressionBreaker(expression);
+        if (breaker != null && breaker.isOpen(expressionFailureThreshold))
+            return EXPRESSION_SUSPENDED_VALUE;
+        Object event = MDCFlightRecorder.beginExpressionEvaluation();
         try {
-            return expressionEvaluator.evaluate(expression, root, argumentValues, environmentVariables);
+            Object result = expressionEvaluator.evaluate(expression, root, argumentValues,
+                    annotatedMethodConfig.getExpressionStaticVariables());
+            if (event != null)
+                MDCFlightRecorder.endExpressionEvaluation(event, expression, annotatedMethodConfig.getMethodId(),
+                        false, null);
+            if (breaker != null)
+                annotatedMethodConfig.removeExpressionBreaker(expression, breaker);
+            return result;
         } catch (Exception e) {
-            return "#EVALUATION ERROR#: " + e.getMessage();
+            MDCMetricsHolder.getMetrics().recordExpressionError(expression);
+            if (event != null)
+                MDCFlightRecorder.endExpressionEvaluation(event, expression, annotatedMethodConfig.getMethodId(),
+                        true, e.getMessage());
+            if (expressionFailureThreshold > 0)
+                recordExpressionFailure(expression, annotatedMethodConfig, e);
+            return EVALUATION_ERROR_PREFIX + e.getMessage();
         }
     }
 
+    private void recordExpressionFailure(String expression, AnnotatedMethodConfig annotatedMethodConfig, Exception e) {
+        ExpressionCircuitBreaker breaker = annotatedMethodConfig.getOrCreateExpressionBreaker(expression);
+        if (!breaker.recordFailure(expressionFailureThreshold, expressionRetryBackoffNanos))
+            return;
+        MDCMetricsHolder.getMetrics().recordExpressionSuspended(expression);
+        if (breaker.getConsecutiveFailures() == expressionFailureThreshold)
+            System.err.println("MDC4Spring: expression '" + expression + "' of " + annotatedMethodConfig.getMethodId() +
+                    " failed " + expressionFailureThreshold + " times in a row and is suspended, retrying every " +
+                    TimeUnit.NANOSECONDS.toMillis(expressionRetryBackoffNanos) + "ms. Last error: " + e.getMessage());
+    }
+
 
     private AnnotatedMethodConfig resolveAnnotatedMethodConfig(Method method) {
         String methodId = method.getDeclaringClass().getName() + "/" + method.getName();
         AnnotatedMethodConfig config = annotatedMethodConfigCache.get(methodId);
+        if (config != null) {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.ANNOTATED_METHOD_CONFIG_CACHE, true);
+            return config;
+        }
+        // Single-flight: concurrent callers of the same method wait for the only one that builds the configuration
+        return annotatedMethodConfigCache.computeIfAbsent(methodId, id -> {
+            MDCMetricsHolder.recordCacheAccess(MDCMetrics.ANNOTATED_METHOD_CONFIG_CACHE, false);
+            return buildAnnotatedMethodConfig(id, method);
+        });
+    }
 
-        if (config == null) {
-            WithMDC methodMDCAnno = method.getAnnotation(WithMDC.class);
-            WithMDC beanMDCAnno = method.getDeclaringClass().getAnnotation(WithMDC.class);
-            final MDCParam methodMDCParamAnno = method.getAnnotation(MDCParam.class);
-            final MDCParam beanMDCParamAnno = method.getDeclaringClass().getAnnotation(MDCParam.class);
-            final MDCParams methodMDCParamsAnno = method.getAnnotation(MDCParams.class);
-            final MDCParams beanMDCParamsAnno = method.getDeclaringClass().getAnnotation(MDCParams.class);
-            final MDCOutParam methodMDCOutParamAnno = method.getAnnotation(MDCOutParam.class);
-            final MDCOutParams methodMDCOutParamsAnno = method.getAnnotation(MDCOutParams.class);
-
-
-            final ArrayList<MDCParam> beanMDCParamAnnotations = new ArrayList<>();
-            if (beanMDCParamAnno != null)
-                beanMDCParamAnnotations.add(beanMDCParamAnno);
-            if (beanMDCParamsAnno != null)
-                beanMDCParamAnnotations.addAll(Arrays.asList(beanMDCParamsAnno.value()));
-
-            final ArrayList<MDCParam> methodMDCParamAnnotations = new ArrayList<>();
-            if (methodMDCParamAnno != null)
-                methodMDCParamAnnotations.add(methodMDCParamAnno);
-            if (methodMDCParamsAnno != null)
-                methodMDCParamAnnotations.addAll(Arrays.asList(methodMDCParamsAnno.value()));
-
-            final ArrayList<MDCOutParam> methodMDCOutParamAnnotations = new ArrayList<>();
-            if (methodMDCOutParamAnno != null)
-                methodMDCOutParamAnnotations.add(methodMDCOutParamAnno);
-            if (methodMDCOutParamsAnno != null)
-                methodMDCOutParamAnnotations.addAll(Arrays.asList(methodMDCOutParamsAnno.value()));
-
-            Annotation[][] argumentsAnnotations = method.getParameterAnnotations();
-            ArrayList<String> argumentsNames = new ArrayList<>();
-            Map<String, MDCParam> mdcParamMap = new HashMap<>();
-
-            // Please note that for successful argument names resolution project must be compiled with
-            // javac -parameters or using Spring Boot plugin
-            String[] argumentsNamesAsDeclared = argumentsNamesDiscoverer.apply(method);
-
-            for (int i = 0; i < argumentsAnnotations.length; i++) {
-                Annotation[] annotations = argumentsAnnotations[i];
-                String parameterName = argumentsNamesAsDeclared[i];
-                MDCParam mdcParam = null;
-
-                for (Annotation annotation : annotations) {
-                    if (MDCParam.class.equals(annotation.annotationType())) {
-                        mdcParam = (MDCParam) annotation;
-                        String paramName = !mdcParam.name().isEmpty() ? mdcParam.name() : mdcParam.value();
-                        if (!paramName.isEmpty()) {
-                            parameterName = paramName;
-                        }
+    private AnnotatedMethodConfig buildAnnotatedMethodConfig(String methodId, Method method) {
+        WithMDC methodMDCAnno = method.getAnnotation(WithMDC.class);
+        WithMDC beanMDCAnno = method.getDeclaringClass().getAnnotation(WithMDC.class);
+        final MDCParam methodMDCParamAnno = method.getAnnotation(MDCParam.class);
+        final MDCParam beanMDCParamAnno = method.getDeclaringClass().getAnnotation(MDCParam.class);
+        final MDCParams methodMDCParamsAnno = method.getAnnotation(MDCParams.class);
+        final MDCParams beanMDCParamsAnno = method.getDeclaringClass().getAnnotation(MDCParams.class);
+        final MDCOutParam methodMDCOutParamAnno = method.getAnnotation(MDCOutParam.class);
+        final MDCOutParams methodMDCOutParamsAnno = method.getAnnotation(MDCOutParams.class);
+
+
+        final ArrayList<MDCParam> beanMDCParamAnnotations = new ArrayList<>();
+        if (beanMDCParamAnno != null)
+            beanMDCParamAnnotations.add(beanMDCParamAnno);
+        if (beanMDCParamsAnno != null)
+            beanMDCParamAnnotations.addAll(Arrays.asList(beanMDCParamsAnno.value()));
+
+        final ArrayList<MDCParam> methodMDCParamAnnotations = new ArrayList<>();
+        if (methodMDCParamAnno != null)
+            methodMDCParamAnnotations.add(methodMDCParamAnno);
+        if (methodMDCParamsAnno != null)
+            methodMDCParamAnnotations.addAll(Arrays.asList(methodMDCParamsAnno.value()));
+
+        final ArrayList<MDCOutParam> methodMDCOutParamAnnotations = new ArrayList<>();
+        if (methodMDCOutParamAnno != null)
+            methodMDCOutParamAnnotations.add(methodMDCOutParamAnno);
+        if (methodMDCOutParamsAnno != null)
+            methodMDCOutParamAnnotations.addAll(Arrays.asList(methodMDCOutParamsAnno.value()));
+
+        Annotation[][] argumentsAnnotations = method.getParameterAnnotations();
+        ArrayList<String> argumentsNames = new ArrayList<>();
+        Map<String, MDCParam> mdcParamMap = new HashMap<>();
+        ArrayList<Integer> extractedArgumentIndexes = new ArrayList<>();
+        ArrayList<MDCParam> extractedArgumentParams = new ArrayList<>();
+        ArrayList<ArgumentMDCParamsExtractor> extractors = new ArrayList<>();
+        IdentityHashMap<MDCParam, ValueSummarizer> summarizers = new IdentityHashMap<>();
+        for (MDCParam parameter : beanMDCParamAnnotations)
+            addSummarizer(summarizers, parameter, null);
+        for (MDCParam parameter : methodMDCParamAnnotations)
+            addSummarizer(summarizers, parameter, null);
+
+        // Please note that for successful argument names resolution project must be compiled with
+        // javac -parameters or using Spring Boot plugin
+        String[] argumentsNamesAsDeclared = argumentsNamesDiscoverer.apply(method);
+
+        for (int i = 0; i < argumentsAnnotations.length; i++) {
+            Annotation[] annotations = argumentsAnnotations[i];
+            String parameterName = argumentsNamesAsDeclared[i];
+            MDCParam mdcParam = null;
+
+            for (Annotation annotation : annotations) {
+                if (MDCParam.class.equals(annotation.annotationType())) {
+                    mdcParam = (MDCParam) annotation;
+                    String paramName = !mdcParam.name().isEmpty() ? mdcParam.name() : mdcParam.value();
+                    if (!paramName.isEmpty()) {
+                        parameterName = paramName;
                     }
                 }
-                argumentsNames.add(parameterName);
-                if (mdcParam != null)
-                    mdcParamMap.put(parameterName, mdcParam);
             }
+            argumentsNames.add(parameterName);
+            if (mdcParam == null)
+                continue;
+            ArgumentMDCParamsExtractor extractor = mdcParam.eval().isEmpty() ?
+                    findArgumentExtractor(method.getParameterTypes()[i]) : null;
+            if (extractor != null) {
+                extractedArgumentIndexes.add(i);
+                extractedArgumentParams.add(mdcParam);
+                extractors.add(extractor);
+            } else {
+                mdcParamMap.put(parameterName, mdcParam);
+                addSummarizer(summarizers, mdcParam, mdcParam.eval().isEmpty() ?
+                        ResolvableType.forMethodParameter(method, i) : null);
+            }
+        }
 
-            final HashMap<String, Object> expressionStaticVariables = new HashMap<>();
-            expressionStaticVariables.put("methodName", method.getName());
-            expressionStaticVariables.put("className", method.getDeclaringClass().getName());
+        final HashMap<String, Object> expressionStaticVariables = new HashMap<>();
+        expressionStaticVariables.put("methodName", method.getName());
+        expressionStaticVariables.put("className", method.getDeclaringClass().getName());
+
+        // Expressions are prepared ahead of the first evaluation. Those that depend only on the environment
+        // and static variables are folded on the first evaluation.
+        final Set<String> constantExpressions = new HashSet<>();
+        if (beanMDCAnno != null)
+            compileExpression(constantExpressions, beanMDCAnno.condition(), expressionStaticVariables.keySet());
+        if (methodMDCAnno != null)
+            compileExpression(constantExpressions, methodMDCAnno.condition(), expressionStaticVariables.keySet());
+        ArrayList<MDCParam> allParams = new ArrayList<>(beanMDCParamAnnotations);
+        allParams.addAll(methodMDCParamAnnotations);
+        allParams.addAll(mdcParamMap.values());
+        allParams.addAll(extractedArgumentParams);
+        for (MDCParam parameter : allParams) {
+            compileExpression(constantExpressions, parameter.condition(), expressionStaticVariables.keySet());
+            compileExpression(constantExpressions, parameter.eval(), expressionStaticVariables.keySet());
+        }
+        for (MDCOutParam parameter : methodMDCOutParamAnnotations)
+            compileExpression(constantExpressions, parameter.eval(), expressionStaticVariables.keySet());
+
+        return new AnnotatedMethodConfig(methodId, beanMDCAnno, methodMDCAnno, beanMDCParamAnnotations,
+                methodMDCParamAnnotations, methodMDCOutParamAnnotations, argumentsNames, mdcParamMap,
+                extractedArgumentIndexes.stream().mapToInt(Integer::intValue).toArray(),
+                extractedArgumentParams.toArray(new MDCParam[0]), extractors.toArray(new ArgumentMDCParamsExtractor[0]), summarizers, expressionStaticVariables,
+                constantExpressions);
+    }
 
-            config = new AnnotatedMethodConfig(beanMDCAnno, methodMDCAnno, beanMDCParamAnnotations,
-                    methodMDCParamAnnotations, methodMDCOutParamAnnotations, argumentsNames, mdcParamMap, expressionStaticVariables);
-            final AnnotatedMethodConfig configUpdated = annotatedMethodConfigCache.putIfAbsent(methodId, config);
-            if (configUpdated != null)
-                config = configUpdated;
+    private void compileExpression(Set<String> constantExpressions, String expression, Set<String> staticVariables) {
+        if (expression.isEmpty())
+            return;
+        expressionEvaluator.prepare(expression);
+        if (expressionEvaluator.isConstant(expression, staticVariables))
+            constantExpressions.add(expression);
+    }
+
+    private static void addSummarizer(Map<MDCParam, ValueSummarizer> summarizers, MDCParam parameter,
+                                      @Nullable ResolvableType declaredType)
+    {
+        ValueSummarizer summarizer = ValueSummarizer.compile(parameter, declaredType);
+        if (summarizer != null)
+            summarizers.put(parameter, summarizer);
+    }
+
+    @Nullable
+    private ArgumentMDCParamsExtractor findArgumentExtractor(Class<?> argumentType) {
+        for (ArgumentMDCParamsExtractor extractor : argumentExtractors) {
+            if (extractor.supports(argumentType))
+                return extractor;
         }
-        return config;
+        return null;
     }
 
 
     private static class AnnotatedMethodConfig {
+        private final String methodId;
         @Nullable
         private final WithMDC beanMDCAnno;
         @Nullable
@@ -251,13 +645,31 @@ public class AnnotatedMethodMDCParamsEvaluator {
         private final List<String> argumentNames;
         private final Map<String, MDCParam> mdcParamByArgumentName;
         private final Map<String, Integer> argumentIndexByParamName;
+        private final int[] extractedArgumentIndexes;
+        private final MDCParam[] extractedArgumentParams;
+        private final ArgumentMDCParamsExtractor[] argumentExtractors;
+        private final boolean scopeCondition;
+        // Keyed by annotation instances
+        private final Map<MDCParam, ValueSummarizer> summarizers;
         private final Map<String, Object> expressionStaticVariables;
-
-        private AnnotatedMethodConfig(@Nullable WithMDC beanMDCAnno, @Nullable WithMDC methodMDCAnno,
+        private final Set<String> constantExpressions;
+        private final ConcurrentHashMap<String, FoldedExpression> foldedExpressions = new ConcurrentHashMap<>();
+        // Breakers of failing expressions, removed as soon as the expression succeeds
+        private final ConcurrentHashMap<String, ExpressionCircuitBreaker> expressionBreakers = new ConcurrentHashMap<>();
+        private final SharedExpressions beanParamsSharedExpressions;
+        private final SharedExpressions methodParamsSharedExpressions;
+        private final SharedExpressions outParamsSharedExpressions;
+
+        private AnnotatedMethodConfig(String methodId, @Nullable WithMDC beanMDCAnno, @Nullable WithMDC methodMDCAnno,
                                       List<MDCParam> beanMDCParamAnnotations, List<MDCParam> methodMDCParamAnnotations,
                                       List<MDCOutParam> methodMDCOutParamAnnotations,
                                       List<String> argumentNames, Map<String, MDCParam> mdcParamByArgumentName,
-                                      Map<String, Object> expressionStaticVariables) {
+                                      int[] extractedArgumentIndexes, MDCParam[] extractedArgumentParams,
+                                      ArgumentMDCParamsExtractor[] argumentExtractors,
+                                      Map<MDCParam, ValueSummarizer> summarizers,
+                                      Map<String, Object> expressionStaticVariables,
+                                      Set<String> constantExpressions) {
+            this.methodId = methodId;
             this.beanMDCAnno = beanMDCAnno;
             this.methodMDCAnno = methodMDCAnno;
             this.beanMDCParamAnnotations = Collections.unmodifiableList(beanMDCParamAnnotations);
@@ -265,13 +677,31 @@ public class AnnotatedMethodMDCParamsEvaluator {
             this.methodMDCOutParamAnnotations = Collections.unmodifiableList(methodMDCOutParamAnnotations);
             this.argumentNames = Collections.unmodifiableList(argumentNames);
             this.mdcParamByArgumentName = Collections.unmodifiableMap(mdcParamByArgumentName);
+            this.extractedArgumentIndexes = extractedArgumentIndexes;
+            this.extractedArgumentParams = extractedArgumentParams;
+            this.argumentExtractors = argumentExtractors;
+            this.scopeCondition = (beanMDCAnno != null && !beanMDCAnno.condition().isEmpty()) ||
+                    (methodMDCAnno != null && !methodMDCAnno.condition().isEmpty());
+            this.summarizers = summarizers;
             this.expressionStaticVariables = Collections.unmodifiableMap(expressionStaticVariables);
+            this.constantExpressions = Collections.unmodifiableSet(constantExpressions);
+            // Parameters of a group are evaluated against the same root object and variables
+            this.beanParamsSharedExpressions = SharedExpressions.ofParams(beanMDCParamAnnotations);
+            this.methodParamsSharedExpressions = SharedExpressions.ofParams(methodMDCParamAnnotations);
+            ArrayList<String> outParamExpressions = new ArrayList<>(methodMDCOutParamAnnotations.size());
+            for (MDCOutParam parameter : methodMDCOutParamAnnotations)
+                outParamExpressions.add(parameter.eval());
+            this.outParamsSharedExpressions = SharedExpressions.of(Collections.emptyList(), outParamExpressions);
             argumentIndexByParamName = new HashMap<>();
             for (int i = 0; i < argumentNames.size(); i++) {
                 argumentIndexByParamName.put(argumentNames.get(i), i);
             }
         }
 
+        public String getMethodId() {
+            return methodId;
+        }
+
         @Nullable
         public WithMDC getBeanMDCAnno() {
             return beanMDCAnno;
@@ -302,6 +732,26 @@ public class AnnotatedMethodMDCParamsEvaluator {
             return mdcParamByArgumentName;
         }
 
+        public int[] getExtractedArgumentIndexes() {
+            return extractedArgumentIndexes;
+        }
+
+        public MDCParam[] getExtractedArgumentParams() {
+            return extractedArgumentParams;
+        }
+
+        public boolean hasScopeCondition() {
+            return scopeCondition;
+        }
+
+        public ArgumentMDCParamsExtractor[] getArgumentExtractors() {
+            return argumentExtractors;
+        }
+
+        public Map<MDCParam, ValueSummarizer> getSummarizers() {
+            return summarizers;
+        }
+
         public int getArgumentParamIndex(String paramName) {
             Integer idx = argumentIndexByParamName.get(paramName);
             if (idx == null)
@@ -312,5 +762,244 @@ public class AnnotatedMethodMDCParamsEvaluator {
         public Map<String, Object> getExpressionStaticVariables() {
             return expressionStaticVariables;
         }
+
+        public boolean isConstantExpression(String expression) {
+            return !constantExpressions.isEmpty() && constantExpressions.contains(expression);
+        }
+
+        @Nullable
+        public FoldedExpression getFoldedExpression(String expression) {
+            return foldedExpressions.get(expression);
+        }
+
+        public void foldExpression(String expression, FoldedExpression folded) {
+            foldedExpressions.put(expression, folded);
+        }
+
+        @Nullable
+        public ExpressionCircuitBreaker getExpressionBreaker(String expression) {
+            return expressionBreakers.isEmpty() ? null : expressionBreakers.get(expression);
+        }
+
+        public ExpressionCircuitBreaker getOrCreateExpressionBreaker(String expression) {
+            ExpressionCircuitBreaker breaker = expressionBreakers.get(expression);
+            if (breaker == null)
+                breaker = expressionBreakers.computeIfAbsent(expression, k -> new ExpressionCircuitBreaker());
+            return breaker;
+        }
+
+        public void removeExpressionBreaker(String expression, ExpressionCircuitBreaker breaker) {
+            expressionBreakers.remove(expression, breaker);
+        }
+
+        public SharedExpressions getBeanParamsSharedExpressions() {
+            return beanParamsSharedExpressions;
+        }
+
+        public SharedExpressions getMethodParamsSharedExpressions() {
+            return methodParamsSharedExpressions;
+        }
+
+        public SharedExpressions getOutParamsSharedExpressions() {
+            return outParamsSharedExpressions;
+        }
+
+        public Map<String, Object> describe() {
+            LinkedHashMap<String, Object> description = new LinkedHashMap<>();
+            description.put("beanNamespace", beanMDCAnno != null ? beanMDCAnno.name() : null);
+            description.put("methodNamespace", methodMDCAnno != null ? methodMDCAnno.name() : null);
+            if (beanMDCAnno != null && !beanMDCAnno.condition().isEmpty())
+                description.put("beanCondition", beanMDCAnno.condition());
+            if (methodMDCAnno != null && !methodMDCAnno.condition().isEmpty())
+                description.put("methodCondition", methodMDCAnno.condition());
+            description.put("beanParams", describeParams(beanMDCParamAnnotations));
+            ArrayList<Map<String, Object>> argumentParams = new ArrayList<>();
+            mdcParamByArgumentName.forEach((paramName, parameter) -> {
+                LinkedHashMap<String, Object> paramDescription = new LinkedHashMap<>();
+                paramDescription.put("name", paramName);
+                paramDescription.put("argument", argumentIndexByParamName.get(paramName));
+                paramDescription.put("eval", parameter.eval());
+                describeSummary(paramDescription, parameter);
+                argumentParams.add(paramDescription);
+            });
+            description.put("argumentParams", argumentParams);
+            ArrayList<Map<String, Object>> extractedArguments = new ArrayList<>();
+            for (int i = 0; i < extractedArgumentIndexes.length; i++) {
+                LinkedHashMap<String, Object> argumentDescription = new LinkedHashMap<>();
+                argumentDescription.put("argument", extractedArgumentIndexes[i]);
+                argumentDescription.put("extractor", argumentExtractors[i].getClass().getName());
+                extractedArguments.add(argumentDescription);
+            }
+            description.put("extractedArguments", extractedArguments);
+            description.put("methodParams", describeParams(methodMDCParamAnnotations));
+            ArrayList<Map<String, Object>> outParams = new ArrayList<>();
+            for (MDCOutParam parameter : methodMDCOutParamAnnotations) {
+                LinkedHashMap<String, Object> paramDescription = new LinkedHashMap<>();
+                paramDescription.put("name", !parameter.name().isEmpty() ? parameter.name() : parameter.value());
+                paramDescription.put("eval", parameter.eval());
+                outParams.add(paramDescription);
+            }
+            description.put("outParams", outParams);
+            ArrayList<String> sortedConstantExpressions = new ArrayList<>(constantExpressions);
+            Collections.sort(sortedConstantExpressions);
+            description.put("constantExpressions", sortedConstantExpressions);
+            TreeSet<String> sharedExpressions = new TreeSet<>(beanParamsSharedExpressions.getExpressions());
+            sharedExpressions.addAll(methodParamsSharedExpressions.getExpressions());
+            sharedExpressions.addAll(outParamsSharedExpressions.getExpressions());
+            description.put("sharedExpressions", new ArrayList<>(sharedExpressions));
+            return description;
+        }
+
+        private static List<Map<String, Object>> describeParams(List<MDCParam> parameters) {
+            ArrayList<Map<String, Object>> descriptions = new ArrayList<>(parameters.size());
+            for (MDCParam parameter : parameters) {
+                LinkedHashMap<String, Object> paramDescription = new LinkedHashMap<>();
+                paramDescription.put("name", !parameter.name().isEmpty() ? parameter.name() : parameter.value());
+                paramDescription.put("eval", parameter.eval());
+                describeSummary(paramDescription, parameter);
+                descriptions.add(paramDescription);
+            }
+            return descriptions;
+        }
+
+        private static void describeSummary(Map<String, Object> paramDescription, MDCParam parameter) {
+            if (!parameter.condition().isEmpty())
+                paramDescription.put("condition", parameter.condition());
+            if (parameter.sampleRate() < 1)
+                paramDescription.put("sampleRate", parameter.sampleRate());
+            if (parameter.cache() != CachePolicy.NONE)
+                paramDescription.put("cache", parameter.cache() == CachePolicy.TTL ?
+                        "TTL " + parameter.cacheTtlMillis() + "ms" : parameter.cache().name());
+            if (parameter.summary() == CollectionSummary.FULL)
+                return;
+            paramDescription.put("summary", parameter.summary().name());
+            if (parameter.summary() == CollectionSummary.FIRST) {
+                paramDescription.put("maxElements", parameter.maxElements());
+                if (!parameter.elementProperty().isEmpty())
+                    paramDescription.put("elementProperty", parameter.elementProperty());
+            }
+        }
+    }
+
+    /**
+     * Cached values of bean-level parameters of a bean instance. Annotations are compared by identity (their
+     * hashCode() is costly), and the map is replaced on each change so that lookups need no locking.
+     */
+    private static class CachedBeanParams {
+        private volatile IdentityHashMap<MDCParam, CachedBeanParam> values = new IdentityHashMap<>();
+
+        @Nullable
+        private CachedBeanParam get(MDCParam parameter) {
+            return values.get(parameter);
+        }
+
+        private synchronized void put(MDCParam parameter, CachedBeanParam value) {
+            IdentityHashMap<MDCParam, CachedBeanParam> newValues = new IdentityHashMap<>(values);
+            newValues.put(parameter, value);
+            values = newValues;
+        }
+    }
+
+    /**
+     * Slots of expressions that occur more than once (as a condition or eval) in a group of parameters, indexed
+     * by parameter position. The values of an invocation are kept in an array allocated only if there is any.
+     */
+    private static class SharedExpressions {
+        private static final Object NOT_EVALUATED = new Object();
+
+        private final int[] conditionSlots;
+        private final int[] evalSlots;
+        private final List<String> expressions;
+
+        private SharedExpressions(int[] conditionSlots, int[] evalSlots, List<String> expressions) {
+            this.conditionSlots = conditionSlots;
+            this.evalSlots = evalSlots;
+            this.expressions = expressions;
+        }
+
+        private static SharedExpressions ofParams(List<MDCParam> parameters) {
+            ArrayList<String> conditions = new ArrayList<>(parameters.size());
+            ArrayList<String> evals = new ArrayList<>(parameters.size());
+            for (MDCParam parameter : parameters) {
+                conditions.add(parameter.condition());
+                evals.add(parameter.eval());
+            }
+            return of(conditions, evals);
+        }
+
+        private static SharedExpressions of(List<String> conditions, List<String> evals) {
+            HashMap<String, Integer> occurrences = new HashMap<>();
+            for (String condition : conditions)
+                occurrences.merge(condition, 1, Integer::sum);
+            for (String eval : evals)
+                occurrences.merge(eval, 1, Integer::sum);
+            LinkedHashMap<String, Integer> slots = new LinkedHashMap<>();
+            int[] conditionSlots = assignSlots(conditions, occurrences, slots);
+            int[] evalSlots = assignSlots(evals, occurrences, slots);
+            return new SharedExpressions(conditionSlots, evalSlots, new ArrayList<>(slots.keySet()));
+        }
+
+        private static int[] assignSlots(List<String> expressions, Map<String, Integer> occurrences,
+                                         Map<String, Integer> slots)
+        {
+            int[] expressionSlots = new int[expressions.size()];
+            for (int i = 0; i < expressions.size(); i++) {
+                String expression = expressions.get(i);
+                if (expression.isEmpty() || occurrences.get(expression) < 2) {
+                    expressionSlots[i] = -1;
+                    continue;
+                }
+                Integer slot = slots.get(expression);
+                if (slot == null) {
+                    slot = slots.size();
+                    slots.put(expression, slot);
+                }
+                expressionSlots[i] = slot;
+            }
+            return expressionSlots;
+        }
+
+        @Nullable
+        private Object[] newValues() {
+            if (expressions.isEmpty())
+                return null;
+            Object[] values = new Object[expressions.size()];
+            Arrays.fill(values, NOT_EVALUATED);
+            return values;
+        }
+
+        private int getConditionSlot(int paramIndex) {
+            return conditionSlots.length > 0 ? conditionSlots[paramIndex] : -1;
+        }
+
+        private int getEvalSlot(int paramIndex) {
+            return evalSlots[paramIndex];
+        }
+
+        private List<String> getExpressions() {
+            return expressions;
+        }
+    }
+
+    private static class FoldedExpression {
+        @Nullable
+        private final Object value;
+        private final int generation;
+
+        private FoldedExpression(@Nullable Object value, int generation) {
+            this.value = value;
+            this.generation = generation;
+        }
+    }
+
+    private static class CachedBeanParam {
+        @Nullable
+        private final Object value;
+        private final long expiresAtNanos;
+
+        private CachedBeanParam(@Nullable Object value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
     }
 }
@@ -0,0 +1,28 @@
+package com.github.throwable.mdc4spring.util;
+
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+
+/**
+ * Extracts MDC parameters from a method argument of a well-known type without evaluating any expression.
+ * <p>
+ * The extractor is chosen once per annotated argument when the method configuration is resolved: it applies to
+ * arguments annotated with {@link com.github.throwable.mdc4spring.anno.MDCParam} without <code>eval</code> whose
+ * declared type is supported by the extractor.
+ */
+public interface ArgumentMDCParamsExtractor {
+    /**
+     * Check if arguments of the declared type are handled by this extractor.
+     * @param argumentType declared type of method argument
+     * @return true if the extractor applies to arguments of this type
+     */
+    boolean supports(Class<?> argumentType);
+
+    /**
+     * Extract MDC parameters from argument value.
+     * @param argument argument value
+     * @param params map to put extracted parameters to
+     */
+    void extract(@Nullable Object argument, Map<String, Object> params);
+}
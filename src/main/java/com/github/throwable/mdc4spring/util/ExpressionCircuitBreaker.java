@@ -0,0 +1,33 @@
+package com.github.throwable.mdc4spring.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tracks consecutive failures of an expression. After <code>failureThreshold</code> consecutive failures the breaker
+ * opens and the expression is not evaluated until the backoff expires. Then a single retry decides whether the breaker
+ * closes (on success) or opens again (on failure).
+ * <p>
+ * Races between concurrent evaluations are tolerated: a few extra evaluations may happen around state transitions.
+ */
+final class ExpressionCircuitBreaker {
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long retryAtNanos;
+
+    boolean isOpen(int failureThreshold) {
+        return consecutiveFailures.get() >= failureThreshold && System.nanoTime() - retryAtNanos < 0;
+    }
+
+    /**
+     * @return true if the breaker has been opened by this failure
+     */
+    boolean recordFailure(int failureThreshold, long retryBackoffNanos) {
+        if (consecutiveFailures.incrementAndGet() < failureThreshold)
+            return false;
+        retryAtNanos = System.nanoTime() + retryBackoffNanos;
+        return true;
+    }
+
+    int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+}
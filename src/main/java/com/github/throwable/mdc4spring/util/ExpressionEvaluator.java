@@ -2,7 +2,9 @@ package com.github.throwable.mdc4spring.util;
 
 import org.springframework.lang.Nullable;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Abstract expression evaluator
@@ -26,4 +28,53 @@ public interface ExpressionEvaluator {
      * @return expression evaluation result
      */
     Object evaluate(String expression, Object rootObject, @Nullable Map<String, Object> argumentValues, Map<String, Object> expressionVariables);
+
+    /**
+     * Prepare expression for further evaluations ahead of time (e.g. parse and cache it).
+     * Implementations must not throw if the expression is malformed: the error is reported on evaluation.
+     *
+     * @param expression expression string to prepare
+     */
+    default void prepare(String expression) {
+    }
+
+    /**
+     * Discard any state derived from the application context or the environment (e.g. resolved beans).
+     * Called when the context is refreshed or the environment changes.
+     */
+    default void refresh() {
+    }
+
+    /**
+     * @return expressions parsed and cached by this evaluator
+     */
+    default Set<String> getCachedExpressions() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return sizes of this evaluator's internal caches by cache name
+     */
+    default Map<String, Integer> getCacheSizes() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Clear this evaluator's internal caches.
+     */
+    default void clearCaches() {
+    }
+
+    /**
+     * Check if the expression result depends only on literals, the given static variables and the environment
+     * (configuration and system properties), so that it may be evaluated once and reused until the environment changes.
+     * Implementations must answer conservatively: when in doubt the expression is not constant.
+     *
+     * @param expression      expression string to check
+     * @param staticVariables names of expression variables whose values never change for a method
+     * @return true if the expression result may be reused
+     */
+    default boolean isConstant(String expression, Set<String> staticVariables) {
+        return false;
+    }
 }
@@ -0,0 +1,140 @@
+package com.github.throwable.mdc4spring.util;
+
+import com.github.throwable.mdc4spring.anno.CollectionSummary;
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.format.MDCValueFormatters;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.ResolvableType;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Renders collection, map and array parameter values according to {@link MDCParam#summary()} without
+ * iterating over more elements than needed. Compiled once per annotated parameter.
+ */
+class ValueSummarizer {
+    private final CollectionSummary summary;
+    private final int maxElements;
+    @Nullable
+    private final String elementProperty;
+    private final ConcurrentHashMap<Class<?>, Function<Object, Object>> elementPropertyAccessors = new ConcurrentHashMap<>();
+
+    private ValueSummarizer(CollectionSummary summary, int maxElements, @Nullable String elementProperty) {
+        this.summary = summary;
+        this.maxElements = Math.max(maxElements, 0);
+        this.elementProperty = elementProperty;
+    }
+
+    /**
+     * @param parameter annotated parameter
+     * @param declaredType declared type of the annotated argument, null if unknown
+     * @return compiled summarizer or null if the value must be rendered as is
+     */
+    @Nullable
+    static ValueSummarizer compile(MDCParam parameter, @Nullable ResolvableType declaredType) {
+        if (parameter.summary() == CollectionSummary.FULL)
+            return null;
+        ValueSummarizer summarizer = new ValueSummarizer(parameter.summary(), parameter.maxElements(),
+                parameter.elementProperty().isEmpty() ? null : parameter.elementProperty());
+        // Resolve element property accessor ahead of time when the element type is declared
+        if (summarizer.elementProperty != null && declaredType != null) {
+            ResolvableType elementType = declaredType.isArray() ? declaredType.getComponentType() :
+                    declaredType.asCollection().getGeneric(0);
+            Class<?> elementClass = elementType.resolve();
+            if (elementClass != null && !elementClass.isInterface())
+                summarizer.elementPropertyAccessor(elementClass);
+        }
+        return summarizer;
+    }
+
+    /**
+     * @param value parameter value
+     * @return summarized value; failures of element getters or concurrent modifications of the value
+     * are rendered as an evaluation error instead of being propagated to the annotated method
+     */
+    @Nullable
+    Object summarize(@Nullable Object value) {
+        if (value == null)
+            return null;
+        try {
+            return summarizeValue(value);
+        } catch (RuntimeException e) {
+            return AnnotatedMethodMDCParamsEvaluator.EVALUATION_ERROR_PREFIX + e.getMessage();
+        }
+    }
+
+    private Object summarizeValue(Object value) {
+        int size;
+        Iterator<?> iterator = null;
+        if (value instanceof Collection) {
+            size = ((Collection<?>) value).size();
+            if (summary == CollectionSummary.FIRST)
+                iterator = ((Collection<?>) value).iterator();
+        } else if (value instanceof Map) {
+            size = ((Map<?, ?>) value).size();
+            if (summary == CollectionSummary.FIRST)
+                iterator = ((Map<?, ?>) value).entrySet().iterator();
+        } else if (value.getClass().isArray()) {
+            size = Array.getLength(value);
+        } else {
+            return value;
+        }
+        if (summary == CollectionSummary.SIZE)
+            return size;
+
+        int count = Math.min(size, maxElements);
+        StringBuilder sb = new StringBuilder(count * 8 + 16).append('[');
+        for (int i = 0; i < count; i++) {
+            if (i > 0)
+                sb.append(", ");
+            Object element = iterator != null ? iterator.next() : Array.get(value, i);
+            sb.append(MDCValueFormatters.format(projectElement(element)));
+        }
+        if (size > count)
+            sb.append(count > 0 ? ", ... " : "... ").append(size - count).append(" more");
+        return sb.append(']').toString();
+    }
+
+    @Nullable
+    private Object projectElement(@Nullable Object element) {
+        if (element == null || elementProperty == null)
+            return element;
+        return elementPropertyAccessor(element.getClass()).apply(element);
+    }
+
+    private Function<Object, Object> elementPropertyAccessor(Class<?> elementClass) {
+        Function<Object, Object> accessor = elementPropertyAccessors.get(elementClass);
+        if (accessor == null)
+            accessor = elementPropertyAccessors.computeIfAbsent(elementClass, this::resolveElementPropertyAccessor);
+        return accessor;
+    }
+
+    private Function<Object, Object> resolveElementPropertyAccessor(Class<?> elementClass) {
+        String propertyName = elementProperty;
+        PropertyDescriptor propertyDescriptor = BeanUtils.getPropertyDescriptor(elementClass, propertyName);
+        if (propertyDescriptor != null && propertyDescriptor.getReadMethod() != null) {
+            // Prefer a public interface method for non-public classes like map entries
+            Method readMethod = ClassUtils.getInterfaceMethodIfPossible(propertyDescriptor.getReadMethod(), elementClass);
+            ReflectionUtils.makeAccessible(readMethod);
+            return element -> ReflectionUtils.invokeMethod(readMethod, element);
+        }
+        Field field = ReflectionUtils.findField(elementClass, propertyName);
+        if (field != null) {
+            ReflectionUtils.makeAccessible(field);
+            return element -> ReflectionUtils.getField(field, element);
+        }
+        String error = AnnotatedMethodMDCParamsEvaluator.EVALUATION_ERROR_PREFIX + "Property '" + propertyName + "' not found in " + elementClass.getName();
+        return element -> error;
+    }
+}
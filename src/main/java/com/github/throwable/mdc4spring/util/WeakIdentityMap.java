@@ -0,0 +1,106 @@
+package com.github.throwable.mdc4spring.util;
+
+import org.springframework.lang.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent map with weakly referenced keys compared by identity. Keys' own <code>equals()</code> and
+ * <code>hashCode()</code> are never called, so distinct beans that are equal do not share entries.
+ * Entries of collected keys are purged when new entries are added.
+ * @param <V> value type
+ */
+public final class WeakIdentityMap<V> {
+    private final ConcurrentHashMap<Object, V> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> collectedKeys = new ReferenceQueue<>();
+
+    @Nullable
+    public V get(Object key) {
+        return entries.get(new LookupKey(key));
+    }
+
+    public V computeIfAbsent(Object key, Supplier<V> valueSupplier) {
+        V value = entries.get(new LookupKey(key));
+        if (value != null)
+            return value;
+        purgeCollectedKeys();
+        return entries.computeIfAbsent(new WeakKey(key, collectedKeys), k -> valueSupplier.get());
+    }
+
+    public void clear() {
+        entries.clear();
+        purgeCollectedKeys();
+    }
+
+    /**
+     * @return values of the entries whose keys are not collected yet
+     */
+    public Collection<V> values() {
+        purgeCollectedKeys();
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    private void purgeCollectedKeys() {
+        Reference<?> collectedKey;
+        while ((collectedKey = collectedKeys.poll()) != null)
+            entries.remove(collectedKey);
+    }
+
+    private static Object referent(Object key) {
+        return key instanceof WeakKey ? ((WeakKey) key).get() : ((LookupKey) key).referent;
+    }
+
+    /**
+     * Key stored in the map. Once its referent is collected it is only equal to itself.
+     */
+    private static final class WeakKey extends WeakReference<Object> {
+        private final int hash;
+
+        private WeakKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof WeakKey) && !(o instanceof LookupKey))
+                return false;
+            Object referent = get();
+            return referent != null && referent == referent(o);
+        }
+    }
+
+    /**
+     * Short-lived key used for lookups only.
+     */
+    private static final class LookupKey {
+        private final Object referent;
+
+        private LookupKey(Object referent) {
+            this.referent = referent;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return (o instanceof WeakKey || o instanceof LookupKey) && referent == referent(o);
+        }
+    }
+}
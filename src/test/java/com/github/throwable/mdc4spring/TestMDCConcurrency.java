@@ -0,0 +1,179 @@
+package com.github.throwable.mdc4spring;
+
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.anno.WithMDC;
+import com.github.throwable.mdc4spring.loggers.LoggerMDCAdapter;
+import com.github.throwable.mdc4spring.metrics.DummyMDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetrics;
+import com.github.throwable.mdc4spring.metrics.MDCMetricsHolder;
+import com.github.throwable.mdc4spring.spring.spel.SpelExpressionEvaluator;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.MethodInvocationMDCParametersValues;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hammers first-call resolution of shared caches and nested scopes usage from many threads at once.
+ */
+public class TestMDCConcurrency {
+    private static final int THREADS = 200;
+
+    private final ConcurrentHashMap<String, AtomicInteger> cacheMisses = new ConcurrentHashMap<>();
+    private final MDCMetrics countingMetrics = new DummyMDCMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void recordCacheAccess(String cacheName, boolean hit) {
+            if (!hit)
+                cacheMisses.computeIfAbsent(cacheName, c -> new AtomicInteger()).incrementAndGet();
+        }
+    };
+    private MDCMetrics originalMetrics;
+    private LoggerMDCAdapter originalMDCLoggerAdapter;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        originalMetrics = MDCMetricsHolder.getMetrics();
+        MDCMetricsHolder.setMetrics(countingMetrics);
+        originalMDCLoggerAdapter = MDC.getLoggerMDCAdapter();
+        MDC.setLoggerMDCAdapter(new ThreadLocalLoggerMDCAdapter());
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @AfterEach
+    public void teardown() {
+        executor.shutdownNow();
+        MDC.setLoggerMDCAdapter(originalMDCLoggerAdapter);
+        MDCMetricsHolder.setMetrics(originalMetrics);
+    }
+
+    @Test
+    public void methodConfigIsResolvedOnce() throws Exception {
+        AtomicInteger resolutions = new AtomicInteger();
+        AnnotatedMethodMDCParamsEvaluator evaluator = new AnnotatedMethodMDCParamsEvaluator(
+                m -> {
+                    resolutions.incrementAndGet();
+                    return Arrays.stream(m.getParameters()).map(Parameter::getName).toArray(String[]::new);
+                },
+                (expression, rootObject, argumentValues, expressionVariables) -> expression);
+        Method method = StressSample.class.getMethod("resolveOnce", String.class);
+
+        List<MethodInvocationMDCParametersValues> results = runConcurrently(i ->
+                evaluator.evalMethodInvocationMDCParamValues(method, new StressSample(), new Object[] {"value" + i}));
+
+        assertThat(resolutions).hasValue(1);
+        assertThat(cacheMisses.get(MDCMetrics.ANNOTATED_METHOD_CONFIG_CACHE)).hasValue(1);
+        for (int i = 0; i < THREADS; i++) {
+            assertThat(results.get(i).getMethodMDCParamValues())
+                    .containsEntry("argument", "value" + i)
+                    .containsEntry("constant", "constantExpression");
+        }
+    }
+
+    @Test
+    public void expressionsAndAccessorsAreResolvedOnce() throws Exception {
+        SpelExpressionEvaluator evaluator = new SpelExpressionEvaluator(
+                new StandardEnvironment(), new GenericApplicationContext());
+        Map<String, Object> variables = Collections.singletonMap("className", StressSample.class.getName());
+
+        List<Object> results = runConcurrently(i ->
+                evaluator.evaluate("stressSampleField + '-' + #index", new StressSample(),
+                        Collections.singletonMap("index", i), variables));
+
+        assertThat(cacheMisses.get(MDCMetrics.EXPRESSION_CACHE)).hasValue(1);
+        assertThat(cacheMisses.get(MDCMetrics.RESOLVED_ACCESSORS_CACHE)).hasValue(1);
+        for (int i = 0; i < THREADS; i++)
+            assertThat(results.get(i)).isEqualTo("private-" + i);
+    }
+
+    @Test
+    public void nestedScopesAreIsolatedPerThread() throws Exception {
+        List<Boolean> results = runConcurrently(i -> {
+            Map<String, String> map = ThreadLocalLoggerMDCAdapter.map();
+            for (int iteration = 0; iteration < 100; iteration++) {
+                try (CloseableMDC ignored = MDC.create("root").put("thread", i)) {
+                    try (CloseableMDC ignored1 = MDC.create().put("iteration", iteration)) {
+                        MDC.param("thread", "overwritten");
+                        try (CloseableMDC ignored2 = MDC.create("nested").put("thread", i)) {
+                            assertThat(map)
+                                    .containsEntry("root.thread", "overwritten")
+                                    .containsEntry("root.nested.thread", String.valueOf(i))
+                                    .containsEntry("root.iteration", String.valueOf(iteration))
+                                    .hasSize(3);
+                        }
+                    }
+                    assertThat(map)
+                            .containsEntry("root.thread", String.valueOf(i))
+                            .hasSize(1);
+                }
+                assertThat(map).isEmpty();
+                assertThat(MDC.hasCurrent()).isFalse();
+            }
+            return true;
+        });
+        assertThat(results).hasSize(THREADS).containsOnly(true);
+    }
+
+    private <T> List<T> runConcurrently(TaskWithIndex<T> task) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        ArrayList<Future<T>> futures = new ArrayList<>(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            final int index = i;
+            futures.add(executor.submit(() -> {
+                barrier.await(30, TimeUnit.SECONDS);
+                return task.run(index);
+            }));
+        }
+        ArrayList<T> results = new ArrayList<>(THREADS);
+        for (Future<T> future : futures)
+            results.add(future.get(60, TimeUnit.SECONDS));
+        return results;
+    }
+
+    interface TaskWithIndex<T> {
+        T run(int index) throws Exception;
+    }
+
+    static class ThreadLocalLoggerMDCAdapter implements LoggerMDCAdapter {
+        private static final ThreadLocal<Map<String, String>> maps = ThreadLocal.withInitial(HashMap::new);
+
+        static Map<String, String> map() {
+            return maps.get();
+        }
+
+        @Override
+        public void put(String key, String value) {
+            maps.get().put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            maps.get().remove(key);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    public static class StressSample {
+        private final String stressSampleField = "private";
+
+        @WithMDC
+        @MDCParam(name = "constant", eval = "constantExpression")
+        public void resolveOnce(@MDCParam("argument") String argument) {
+        }
+    }
+}
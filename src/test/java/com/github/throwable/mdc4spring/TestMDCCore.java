@@ -6,6 +6,8 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.*;
+
 import static org.assertj.core.api.Assertions.*;
 
 
@@ -176,4 +178,359 @@ public class TestMDCCore {
                 })
         ).isInstanceOf(UnsupportedOperationException.class);
     }
+
+    @Test
+    public void batchForEachRebindsChangedParams() {
+        List<String> puts = new ArrayList<>();
+        MDC.setLoggerMDCAdapter(new MapBasedLoggerMDCAdapter() {
+            @Override
+            public void put(String key, String value) {
+                puts.add(key + "=" + value);
+                super.put(key, value);
+            }
+        });
+        try {
+            List<Map<String, String>> seen = new ArrayList<>();
+            MDC.with("batch").param("job", "import").forEach(Arrays.asList(1, 2, 3, 4),
+                    (item, mdc) -> {
+                        mdc.put("item", item);
+                        mdc.put("group", item <= 2 ? "a" : "b");
+                        if (item == 2)
+                            mdc.put("special", true);
+                    },
+                    item -> {
+                        if (item == 3)
+                            MDC.param("extra", "value");
+                        seen.add(new HashMap<>(((MapBasedLoggerMDCAdapter) MDC.getLoggerMDCAdapter()).getMap()));
+                    });
+
+            assertThat(seen).hasSize(4);
+            assertThat(seen.get(0)).containsOnlyKeys("batch.job", "batch.item", "batch.group");
+            assertThat(seen.get(1)).containsEntry("batch.special", "true").containsEntry("batch.item", "2");
+            assertThat(seen.get(2)).containsOnlyKeys("batch.job", "batch.item", "batch.group", "batch.extra");
+            assertThat(seen.get(3)).containsOnlyKeys("batch.job", "batch.item", "batch.group")
+                    .containsEntry("batch.group", "b");
+            assertThat(((MapBasedLoggerMDCAdapter) MDC.getLoggerMDCAdapter()).getMap()).isEmpty();
+            // job is published once, item for each element, group only when changed
+            assertThat(puts).filteredOn(put -> put.startsWith("batch.job")).hasSize(1);
+            assertThat(puts).filteredOn(put -> put.startsWith("batch.item")).hasSize(4);
+            assertThat(puts).filteredOn(put -> put.startsWith("batch.group")).hasSize(2);
+        } finally {
+            MDC.setLoggerMDCAdapter(mdcAdapter);
+        }
+    }
+
+    @Test
+    public void mdcTemplate() {
+        MDCTemplate template = MDCTemplate.builder("job")
+                .param("component", "importer")
+                .param("tenant", 42)
+                .build();
+
+        try (CloseableMDC mdc = template.open("tenant", 43)) {
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(2)
+                    .containsEntry("job.component", "importer")
+                    .containsEntry("job.tenant", "43");
+            assertThat(mdc.get("tenant")).isEqualTo(43);
+
+            template.run(() -> assertThat(mdcAdapter.getMap())
+                    .hasSize(4)
+                    .containsEntry("job.job.component", "importer")
+                    .containsEntry("job.job.tenant", "42"));
+            assertThat(mdcAdapter.getMap()).hasSize(2);
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+
+        String result = template.run(() -> {
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(2)
+                    .containsEntry("job.tenant", "42");
+            return "Result";
+        });
+        assertThat(result).isEqualTo("Result");
+        assertThat(mdcAdapter.getMap()).isEmpty();
+    }
+
+    private static final MDCKey<Long> ORDER_ID = MDCKey.of("orderId");
+    private static final MDCKey<int[]> POSITION = MDCKey.of("position", p -> p[0] + ":" + p[1]);
+
+    @Test
+    public void typedKeys() {
+        try (CloseableMDC mdc = MDC.create("order")) {
+            MDC.param(ORDER_ID, 42L);
+            mdc.put(POSITION, new int[] {1, 2});
+            assertThat(mdc.get(ORDER_ID)).isEqualTo(42L);
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(2)
+                    .containsEntry("order.orderId", "42")
+                    .containsEntry("order.position", "1:2");
+
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("position", "overridden");
+                nested.put(ORDER_ID, 43L);
+                assertThat(mdcAdapter.getMap())
+                        .hasSize(2)
+                        .containsEntry("order.orderId", "43")
+                        .containsEntry("order.position", "overridden");
+            }
+            // Restored value is formatted with the key formatter
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(2)
+                    .containsEntry("order.orderId", "42")
+                    .containsEntry("order.position", "1:2");
+
+            mdc.put(POSITION, null);
+            assertThat(mdcAdapter.getMap()).containsEntry("order.position", null);
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+    }
+
+    @Test
+    public void primitiveValues() {
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("long", 10_000_000_000L)
+                    .put("int", 42)
+                    .put("boolean", true)
+                    .put("double", 0.5)
+                    .put("char", 'c')
+                    .put("byte", (byte) 7)
+                    .put("short", (short) 300);
+            assertThat(mdcAdapter.getMap())
+                    .containsEntry("long", "10000000000")
+                    .containsEntry("int", "42")
+                    .containsEntry("boolean", "true")
+                    .containsEntry("double", "0.5")
+                    .containsEntry("char", "c")
+                    .containsEntry("byte", "7")
+                    .containsEntry("short", "300");
+            assertThat(mdc.get("long")).isEqualTo(10_000_000_000L);
+            assertThat(mdc.get("int")).isEqualTo(42);
+            assertThat(mdc.get("boolean")).isEqualTo(true);
+            assertThat(mdc.get("double")).isEqualTo(0.5);
+            assertThat(mdc.get("char")).isEqualTo('c');
+            assertThat(mdc.get("byte")).isEqualTo((byte) 7);
+            assertThat(mdc.get("short")).isEqualTo((short) 300);
+
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("int", "overridden");
+                assertThat(mdcAdapter.getMap()).containsEntry("int", "overridden");
+            }
+            assertThat(mdcAdapter.getMap()).containsEntry("int", "42");
+            assertThat(MDC.snapshot()).containsEntry("int", 42);
+
+            mdc.put("int", "boxed");
+            assertThat(mdc.get("int")).isEqualTo("boxed");
+            mdc.put("int", 43);
+            assertThat(mdc.get("int")).isEqualTo(43);
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+    }
+
+    @Test
+    public void limits() {
+        MDCLimits originalLimits = MDC.getLimits();
+        MDC.setLimits(new MDCLimits(5, 2, 30));
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("long", "1234567890");
+            mdc.put("short", "123");
+            mdc.put("rejected", "1");
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(2)
+                    .containsEntry("long", "12345" + MDCLimits.TRUNCATION_MARKER)
+                    .containsEntry("short", "123");
+            assertThat(mdc.get("rejected")).isNull();
+
+            try (CloseableMDC nested = MDC.create()) {
+                // 19 + 3 characters are already used by the root MDC
+                nested.put("nested", "123456789");
+                assertThat(mdcAdapter.getMap()).doesNotContainKey("nested");
+            }
+            // Overwriting a parameter releases its previous length
+            mdc.put("long", "1");
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("nested", "12345");
+                assertThat(mdcAdapter.getMap()).containsEntry("nested", "12345");
+            }
+        } finally {
+            MDC.setLimits(originalLimits);
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+    }
+
+    @Test
+    public void retention() {
+        MDCRetention originalRetention = MDC.getRetention();
+        List<String> payload = Arrays.asList("a", "b");
+        try (CloseableMDC mdc = MDC.create()) {
+            MDC.setRetention(MDCRetention.FORMATTED);
+            mdc.put("formatted", payload);
+            mdc.put("number", 42L);
+            assertThat(mdc.get("formatted")).isEqualTo("[a, b]");
+            assertThat(mdc.get("number")).isEqualTo(42L);
+
+            MDC.setRetention(MDCRetention.WEAK);
+            mdc.put("weak", payload);
+            assertThat(mdc.get("weak")).isSameAs(payload);
+
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("formatted", "overridden");
+                nested.put("weak", "overridden");
+            }
+            assertThat(mdcAdapter.getMap())
+                    .containsEntry("formatted", "[a, b]")
+                    .containsEntry("weak", "[a, b]");
+            assertThat(MDC.snapshot()).containsEntry("formatted", "[a, b]");
+        } finally {
+            MDC.setRetention(originalRetention);
+        }
+    }
+
+    @Test
+    public void invalidRetentionPropertyFallsBackToStrong() {
+        String originalProperty = System.getProperty(MDCRetention.RETENTION_SYSTEM_PROPERTY);
+        try {
+            System.setProperty(MDCRetention.RETENTION_SYSTEM_PROPERTY, " weak ");
+            assertThat(MDCRetention.fromSystemProperties()).isEqualTo(MDCRetention.WEAK);
+            System.setProperty(MDCRetention.RETENTION_SYSTEM_PROPERTY, "weeak");
+            assertThat(MDCRetention.fromSystemProperties()).isEqualTo(MDCRetention.STRONG);
+        } finally {
+            if (originalProperty != null)
+                System.setProperty(MDCRetention.RETENTION_SYSTEM_PROPERTY, originalProperty);
+            else
+                System.clearProperty(MDCRetention.RETENTION_SYSTEM_PROPERTY);
+        }
+    }
+
+    @Test
+    public void joinedMDC() {
+        MDCKey<Integer> quantity = MDCKey.of("quantity");
+        try (CloseableMDC mdc = MDC.create("order")) {
+            mdc.put("id", "A-1").put("count", 1).put("status", "new");
+            try (CloseableMDC joined = MDC.join()) {
+                assertThat(joined).isSameAs(mdc);
+                joined.put("id", "A-2").put("count", "many").put(quantity, 5).remove("status");
+                try (CloseableMDC joinedAgain = MDC.join()) {
+                    joinedAgain.put("count", 3).put("extra", true);
+                    assertThat(mdcAdapter.getMap())
+                            .containsEntry("order.count", "3")
+                            .containsEntry("order.extra", "true");
+                }
+                try (CloseableMDC nested = MDC.create()) {
+                    nested.put("id", "A-3");
+                    try (CloseableMDC joinedNested = MDC.join()) {
+                        joinedNested.put("line", 1);
+                        // Belongs to the outer frame, so it is kept when the inner one closes
+                        mdc.put("status", "pending");
+                    }
+                    assertThat(mdcAdapter.getMap())
+                            .doesNotContainKey("order.line")
+                            .containsEntry("order.status", "pending");
+                }
+                assertThat(mdcAdapter.getMap())
+                        .hasSize(4)
+                        .containsEntry("order.id", "A-2")
+                        .containsEntry("order.count", "many")
+                        .containsEntry("order.quantity", "5")
+                        .containsEntry("order.status", "pending");
+            }
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(3)
+                    .containsEntry("order.id", "A-1")
+                    .containsEntry("order.count", "1")
+                    .containsEntry("order.status", "new");
+            assertThat(mdc.get("count")).isEqualTo(1);
+            assertThat(MDC.current()).isSameAs(mdc);
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+        assertThatThrownBy(MDC::join).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void joinedMDCKeepsChangesAfterRecordingStopped() {
+        MDCRetention originalRetention = MDC.getRetention();
+        List<String> payload = Arrays.asList("a", "b");
+        try (CloseableMDC mdc = MDC.create()) {
+            MDC.setRetention(MDCRetention.WEAK);
+            mdc.put("id", "A-1").put("count", 1).put("payload", payload);
+            try (CloseableMDC outer = MDC.join()) {
+                try (CloseableMDC joined = MDC.join()) {
+                    joined.put("id", "A-2").put("count", 2).put("payload", "none").put("step", "one");
+                    joined.stopRecording();
+                    // Re-put of the same value by the method body is kept
+                    joined.put("id", "A-2").put("result", "ok").remove("step");
+                }
+                assertThat(mdc.get("count")).isEqualTo(1);
+                assertThat(mdc.get("payload")).isSameAs(payload);
+                assertThat(mdcAdapter.getMap())
+                        .hasSize(4)
+                        .containsEntry("id", "A-2")
+                        .containsEntry("count", "1")
+                        .containsEntry("payload", "[a, b]")
+                        .containsEntry("result", "ok");
+            }
+            // Changes kept by the inner frame are undone by the outer one that recorded them
+            assertThat(mdcAdapter.getMap())
+                    .hasSize(3)
+                    .containsEntry("id", "A-1")
+                    .doesNotContainKey("result");
+        } finally {
+            MDC.setRetention(originalRetention);
+        }
+        assertThatThrownBy(() -> {
+            try (CloseableMDC mdc = MDC.create()) {
+                mdc.stopRecording();
+            }
+        }).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void unchangedValuesAreNotRepublished() {
+        List<String> writes = new ArrayList<>();
+        MDC.setLoggerMDCAdapter(new MapBasedLoggerMDCAdapter() {
+            @Override
+            public void put(String key, String value) {
+                writes.add("put " + key + "=" + value);
+                super.put(key, value);
+            }
+
+            @Override
+            public void remove(String key) {
+                writes.add("remove " + key);
+                super.remove(key);
+            }
+        });
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("orderId", "A-1").put("count", 1);
+            mdc.put("orderId", "A-1").put("count", 1);
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("orderId", "A-1").put("count", 2);
+            }
+            assertThat(writes).containsExactly(
+                    "put orderId=A-1", "put count=1",
+                    "put count=2",
+                    "put count=1");
+            assertThat(((MapBasedLoggerMDCAdapter) MDC.getLoggerMDCAdapter()).getMap())
+                    .containsEntry("orderId", "A-1")
+                    .containsEntry("count", "1");
+        } finally {
+            MDC.setLoggerMDCAdapter(mdcAdapter);
+        }
+        assertThat(writes).hasSize(6).contains("remove orderId", "remove count");
+    }
+
+    @Test
+    public void mutatedValueIsRepublished() {
+        List<String> items = new ArrayList<>(Collections.singletonList("a"));
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("items", items);
+            items.add("b");
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("items", items);
+                assertThat(mdcAdapter.getMap()).containsEntry("items", "[a, b]");
+            }
+            assertThat(mdcAdapter.getMap()).containsEntry("items", "[a]");
+        }
+        assertThat(mdcAdapter.getMap()).isEmpty();
+    }
 }
@@ -0,0 +1,175 @@
+package com.github.throwable.mdc4spring.format;
+
+import com.github.throwable.mdc4spring.CloseableMDC;
+import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.MapBasedLoggerMDCAdapter;
+import com.github.throwable.mdc4spring.loggers.LoggerMDCAdapter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMDCValueFormatters {
+
+    enum Status {
+        ACTIVE {
+            @Override
+            public String toString() {
+                return "Active status";
+            }
+        }
+    }
+
+    interface Identified {
+        long getId();
+    }
+
+    static class Entity implements Identified {
+        @Override
+        public long getId() {
+            return 42;
+        }
+
+        @Override
+        public String toString() {
+            return "Entity with a huge graph";
+        }
+    }
+
+    static class Order extends Entity {
+    }
+
+    @AfterEach
+    public void unregisterFormatters() {
+        MDCValueFormatters.unregister(Identified.class);
+        MDCValueFormatters.unregister(Order.class);
+        MDCValueFormatters.unregister(CharSequence.class);
+        MDCValueFormatters.unregisterBuiltInFormatters();
+    }
+
+    @Test
+    public void toStringIsUsedByDefault() {
+        assertThat(MDCValueFormatters.format(null)).isNull();
+        assertThat(MDCValueFormatters.format(Status.ACTIVE)).isEqualTo("Active status");
+        assertThat(MDCValueFormatters.format(new Date(0))).isEqualTo(new Date(0).toString());
+        assertThat(MDCValueFormatters.format(new BigDecimal("1E+3"))).isEqualTo("1E+3");
+        assertThat(MDCValueFormatters.format(1e10)).isEqualTo("1.0E10");
+        assertThat(MDCValueFormatters.format(Arrays.asList("a", Status.ACTIVE))).isEqualTo("[a, Active status]");
+        assertThat(MDCValueFormatters.format("plain")).isEqualTo("plain");
+    }
+
+    @Test
+    public void builtInFormatters() {
+        MDCValueFormatters.registerBuiltInFormatters();
+        assertThat(MDCValueFormatters.format(null)).isNull();
+        assertThat(MDCValueFormatters.format(Status.ACTIVE)).isEqualTo("ACTIVE");
+        assertThat(MDCValueFormatters.format(new BigDecimal("1E+3"))).isEqualTo("1000");
+        assertThat(MDCValueFormatters.format(new Date(0))).isEqualTo("1970-01-01T00:00:00Z");
+        assertThat(MDCValueFormatters.format(new int[] {1, 2})).isEqualTo("[1, 2]");
+        assertThat(MDCValueFormatters.format(new Object[] {new long[] {1}, Status.ACTIVE})).isEqualTo("[[1], ACTIVE]");
+        assertThat(MDCValueFormatters.format(new String[] {"a", "b"})).isEqualTo("[a, b]");
+        assertThat(MDCValueFormatters.format(Arrays.asList("a", new byte[] {3})))
+                .isEqualTo("[a, [3]]");
+        assertThat(MDCValueFormatters.format(Collections.singletonMap(Status.ACTIVE, new char[] {'x'})))
+                .isEqualTo("{ACTIVE=[x]}");
+        assertThat(MDCValueFormatters.format(new Entity())).isEqualTo("Entity with a huge graph");
+    }
+
+    @Test
+    public void builtInUuidFormatter() {
+        MDCValueFormatters.registerBuiltInFormatters();
+        UUID uuid = UUID.fromString("0189a3b4-c5d6-7e8f-9012-3456789abcde");
+        assertThat(MDCValueFormatters.format(uuid)).isEqualTo("0189a3b4-c5d6-7e8f-9012-3456789abcde");
+        UUID random = UUID.randomUUID();
+        assertThat(MDCValueFormatters.format(random)).isEqualTo(random.toString());
+        assertThat(MDCValueFormatters.format(new UUID(0, 0))).isEqualTo("00000000-0000-0000-0000-000000000000");
+        assertThat(MDCValueFormatters.format(new UUID(-1, -1))).isEqualTo("ffffffff-ffff-ffff-ffff-ffffffffffff");
+    }
+
+    @Test
+    public void builtInNumberFormatter() {
+        MDCValueFormatters.registerBuiltInFormatters();
+        assertThat(MDCValueFormatters.format(1e10)).isEqualTo("10000000000");
+        assertThat(MDCValueFormatters.format(1.5e-5f)).isEqualTo("0.000015");
+        assertThat(MDCValueFormatters.format(0.5)).isEqualTo("0.5");
+        assertThat(MDCValueFormatters.format(Double.NaN)).isEqualTo("NaN");
+        assertThat(MDCValueFormatters.format(Double.NEGATIVE_INFINITY)).isEqualTo("-Infinity");
+        assertThat(MDCValueFormatters.format(42L)).isEqualTo("42");
+        assertThat(MDCValueFormatters.format(new BigInteger("12345678901234567890"))).isEqualTo("12345678901234567890");
+        assertThat(MDCValueFormatters.format(new AtomicLong(7))).isEqualTo("7");
+    }
+
+    @Test
+    public void builtInTemporalFormatters() {
+        MDCValueFormatters.registerBuiltInFormatters();
+        ZonedDateTime dateTime = ZonedDateTime.of(2024, 3, 1, 10, 15, 30, 0, ZoneId.of("Europe/Paris"));
+        assertThat(MDCValueFormatters.format(dateTime)).isEqualTo("2024-03-01T10:15:30+01:00");
+        Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        calendar.setTimeInMillis(0);
+        assertThat(MDCValueFormatters.format(calendar)).isEqualTo("1970-01-01T00:00:00Z");
+        assertThat(MDCValueFormatters.format(Instant.EPOCH)).isEqualTo("1970-01-01T00:00:00Z");
+        assertThat(MDCValueFormatters.format(LocalDate.of(2024, 3, 1))).isEqualTo("2024-03-01");
+        assertThat(MDCValueFormatters.format(Duration.ofMinutes(90))).isEqualTo("PT1H30M");
+    }
+
+    @Test
+    public void registeredFormatters() {
+        MDCValueFormatters.register(Identified.class, value -> "#" + value.getId());
+        assertThat(MDCValueFormatters.format(new Entity())).isEqualTo("#42");
+        assertThat(MDCValueFormatters.format(new Order())).isEqualTo("#42");
+
+        MDCValueFormatters.register(Order.class, value -> "Order#" + value.getId());
+        assertThat(MDCValueFormatters.format(new Order())).isEqualTo("Order#42");
+        assertThat(MDCValueFormatters.format(Collections.singletonList(new Entity())))
+                .isEqualTo("[Entity with a huge graph]");
+        MDCValueFormatters.registerBuiltInFormatters();
+        assertThat(MDCValueFormatters.format(Collections.singletonList(new Entity()))).isEqualTo("[#42]");
+
+        MDCValueFormatters.unregister(Order.class);
+        assertThat(MDCValueFormatters.format(new Order())).isEqualTo("#42");
+
+        MDCValueFormatters.register(CharSequence.class, value -> value.toString().trim());
+        assertThat(MDCValueFormatters.format(" padded ")).isEqualTo("padded");
+    }
+
+    @Test
+    public void formattersAreAppliedToMDC() {
+        MDCValueFormatters.register(Identified.class, value -> "#" + value.getId());
+        LoggerMDCAdapter originalAdapter = MDC.getLoggerMDCAdapter();
+        MapBasedLoggerMDCAdapter adapter = new MapBasedLoggerMDCAdapter();
+        MDC.setLoggerMDCAdapter(adapter);
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("entity", new Entity());
+            assertThat(adapter.getMap()).containsEntry("entity", "#42");
+            try (CloseableMDC nested = MDC.create()) {
+                nested.put("entity", "overridden");
+            }
+            assertThat(adapter.getMap()).containsEntry("entity", "#42");
+        } finally {
+            MDC.setLoggerMDCAdapter(originalAdapter);
+        }
+    }
+
+    @Test
+    public void formattersAreAppliedToPrimitiveValues() {
+        MDCValueFormatters.registerBuiltInFormatters();
+        LoggerMDCAdapter originalAdapter = MDC.getLoggerMDCAdapter();
+        MapBasedLoggerMDCAdapter adapter = new MapBasedLoggerMDCAdapter();
+        MDC.setLoggerMDCAdapter(adapter);
+        try (CloseableMDC mdc = MDC.create()) {
+            mdc.put("double", 1e10).put("long", 42L);
+            assertThat(adapter.getMap())
+                    .containsEntry("double", "10000000000")
+                    .containsEntry("long", "42");
+            assertThat(mdc.get("double")).isEqualTo(1e10);
+        } finally {
+            MDC.setLoggerMDCAdapter(originalAdapter);
+        }
+    }
+}
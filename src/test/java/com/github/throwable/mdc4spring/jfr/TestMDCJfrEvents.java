@@ -0,0 +1,106 @@
+package com.github.throwable.mdc4spring.jfr;
+
+import com.github.throwable.mdc4spring.CloseableMDC;
+import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.anno.WithMDC;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Parameter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMDCJfrEvents {
+    private static final String SCOPE_EVENT = "com.github.throwable.mdc4spring.Scope";
+    private static final String EXPRESSION_EVENT = "com.github.throwable.mdc4spring.ExpressionEvaluation";
+
+    @Test
+    public void scopeAndExpressionEventsAreRecorded() throws Exception {
+        AnnotatedMethodMDCParamsEvaluator evaluator = new AnnotatedMethodMDCParamsEvaluator(
+                m -> Arrays.stream(m.getParameters()).map(Parameter::getName).toArray(String[]::new),
+                (expression, rootObject, argumentValues, expressionVariables) -> {
+                    if ("fail".equals(expression))
+                        throw new IllegalStateException("Evaluation failed");
+                    return expression;
+                });
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(SCOPE_EVENT).withoutThreshold();
+            recording.enable(EXPRESSION_EVENT).withoutThreshold();
+            recording.start();
+
+            try (CloseableMDC ignored = MDC.create("outer").put("param1", "value1")) {
+                try (CloseableMDC ignored1 = MDC.create().put("param2", "value2").put("param3", "value3")) {
+                    evaluator.evalMethodInvocationMDCParamValues(
+                            JfrSample.class.getMethod("execute"), new JfrSample(), new Object[0]);
+                }
+            }
+            recording.stop();
+            events = readEvents(recording);
+        }
+
+        List<RecordedEvent> scopeEvents = events.stream()
+                .filter(e -> SCOPE_EVENT.equals(e.getEventType().getName()))
+                .collect(Collectors.toList());
+        assertThat(scopeEvents).hasSize(2);
+        assertThat(scopeEvents).anySatisfy(e -> {
+            assertThat(e.getString("namespace")).isEqualTo("outer.");
+            assertThat(e.getInt("depth")).isEqualTo(1);
+            assertThat(e.getInt("paramCount")).isEqualTo(1);
+        });
+        assertThat(scopeEvents).anySatisfy(e -> {
+            assertThat(e.getInt("depth")).isEqualTo(2);
+            assertThat(e.getInt("paramCount")).isEqualTo(2);
+        });
+
+        List<RecordedEvent> expressionEvents = events.stream()
+                .filter(e -> EXPRESSION_EVENT.equals(e.getEventType().getName()))
+                .collect(Collectors.toList());
+        assertThat(expressionEvents).hasSize(2);
+        assertThat(expressionEvents).anySatisfy(e -> {
+            assertThat(e.getString("expression")).isEqualTo("fail");
+            assertThat(e.getString("method")).isEqualTo(JfrSample.class.getName() + "/execute");
+            assertThat(e.getBoolean("failed")).isTrue();
+            assertThat(e.getString("failure")).isEqualTo("Evaluation failed");
+        });
+        assertThat(expressionEvents).anySatisfy(e -> {
+            assertThat(e.getString("expression")).isEqualTo("constant");
+            assertThat(e.getBoolean("failed")).isFalse();
+        });
+    }
+
+    @Test
+    public void eventsAreNotAllocatedWithoutRecording() {
+        assertThat(MDCFlightRecorder.beginScope()).isNull();
+        assertThat(MDCFlightRecorder.beginExpressionEvaluation()).isNull();
+    }
+
+    private static List<RecordedEvent> readEvents(Recording recording) throws IOException {
+        Path file = Files.createTempFile("mdc4spring", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    public static class JfrSample {
+        @WithMDC
+        @MDCParam(name = "param1", eval = "constant")
+        @MDCParam(name = "param2", eval = "fail")
+        public void execute() {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.throwable.mdc4spring.metrics;
+
+import com.github.throwable.mdc4spring.CloseableMDC;
+import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.anno.WithMDC;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.MethodInvocationMDCParametersValues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMDCMetrics {
+    SimpleMeterRegistry meterRegistry;
+    MicrometerMDCMetrics metrics;
+
+    @BeforeEach
+    public void installMetrics() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new MicrometerMDCMetrics(meterRegistry, 1);
+        MDCMetricsHolder.setMetrics(metrics);
+    }
+
+    @AfterEach
+    public void uninstallMetrics() {
+        metrics.close();
+        assertThat(MDCMetricsHolder.getMetrics()).isSameAs(DummyMDCMetrics.INSTANCE);
+    }
+
+    @Test
+    public void scopeMetrics() {
+        try (CloseableMDC ignored = MDC.create().put("param1", "value1")) {
+            try (CloseableMDC ignored1 = MDC.create().put("param2", "value2").put("param3", "value3")) {
+                MDC.param("param4", "value4");
+            }
+        }
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.SCOPE_DEPTH_SUMMARY).summary().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.SCOPE_DEPTH_SUMMARY).summary().max()).isEqualTo(2);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.SCOPE_PARAMS_SUMMARY).summary().totalAmount()).isEqualTo(4);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.SCOPE_PARAMS_SUMMARY).summary().max()).isEqualTo(3);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.SCOPE_DEPTH_SUMMARY).summary().takeSnapshot().histogramCounts())
+                .as("Scope depth is published as a histogram")
+                .isNotEmpty()
+                .anySatisfy(bucket -> assertThat(bucket.bucket()).isEqualTo(2));
+    }
+
+    @Test
+    public void evaluationMetrics() throws NoSuchMethodException {
+        AnnotatedMethodMDCParamsEvaluator evaluator = new AnnotatedMethodMDCParamsEvaluator(
+                m -> Arrays.stream(m.getParameters()).map(Parameter::getName).toArray(String[]::new),
+                (expression, rootObject, argumentValues, expressionVariables) -> {
+                    if ("fail".equals(expression))
+                        throw new IllegalStateException("Evaluation failed");
+                    return expression;
+                });
+        Method method = MetricsSample.class.getMethod("execute", String.class);
+
+        MethodInvocationMDCParametersValues values = evaluator.evalMethodInvocationMDCParamValues(
+                method, new MetricsSample(), new Object[] {"value"});
+        evaluator.evalMethodInvocationMDCParamValues(method, new MetricsSample(), new Object[] {"value"});
+
+        assertThat(values).isNotNull();
+        assertThat(values.getMethodMDCParamValues())
+                .containsEntry("param1", "constant")
+                .containsEntry("param2", "#EVALUATION ERROR#: Evaluation failed");
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.PARAMS_EVALUATION_TIMER)
+                .tag("class", MetricsSample.class.getName())
+                .tag("method", "execute")
+                .timer().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.EXPRESSION_ERRORS_COUNTER).counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.CACHE_GETS_COUNTER)
+                .tag("cache", MDCMetrics.ANNOTATED_METHOD_CONFIG_CACHE)
+                .tag("result", "miss")
+                .counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.CACHE_GETS_COUNTER)
+                .tag("cache", MDCMetrics.ANNOTATED_METHOD_CONFIG_CACHE)
+                .tag("result", "hit")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void expressionSuspensionMetrics() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger evaluations = new AtomicInteger();
+        AnnotatedMethodMDCParamsEvaluator evaluator;
+        System.setProperty(AnnotatedMethodMDCParamsEvaluator.EXPRESSION_FAILURE_THRESHOLD_SYSTEM_PROPERTY, "3");
+        System.setProperty(AnnotatedMethodMDCParamsEvaluator.EXPRESSION_RETRY_BACKOFF_SYSTEM_PROPERTY, "100");
+        try {
+            evaluator = new AnnotatedMethodMDCParamsEvaluator(
+                    m -> Arrays.stream(m.getParameters()).map(Parameter::getName).toArray(String[]::new),
+                    (expression, rootObject, argumentValues, expressionVariables) -> {
+                        evaluations.incrementAndGet();
+                        if (failing.get())
+                            throw new IllegalStateException("Evaluation failed");
+                        return expression;
+                    });
+        } finally {
+            System.clearProperty(AnnotatedMethodMDCParamsEvaluator.EXPRESSION_FAILURE_THRESHOLD_SYSTEM_PROPERTY);
+            System.clearProperty(AnnotatedMethodMDCParamsEvaluator.EXPRESSION_RETRY_BACKOFF_SYSTEM_PROPERTY);
+        }
+        Method method = SuspensionSample.class.getMethod("execute");
+
+        MethodInvocationMDCParametersValues values = null;
+        for (int i = 0; i < 5; i++)
+            values = evaluator.evalMethodInvocationMDCParamValues(method, new SuspensionSample(), new Object[0]);
+        assertThat(values).isNotNull();
+        assertThat(values.getMethodMDCParamValues())
+                .containsEntry("flaky", AnnotatedMethodMDCParamsEvaluator.EXPRESSION_SUSPENDED_VALUE);
+        assertThat(evaluations.get()).isEqualTo(3);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.EXPRESSION_ERRORS_COUNTER).counter().count()).isEqualTo(3);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.EXPRESSION_SUSPENSIONS_COUNTER).counter().count()).isEqualTo(1);
+
+        // The expression is retried after the backoff and evaluated normally once it succeeds
+        Thread.sleep(150);
+        failing.set(false);
+        for (int i = 0; i < 2; i++)
+            values = evaluator.evalMethodInvocationMDCParamValues(method, new SuspensionSample(), new Object[0]);
+        assertThat(values.getMethodMDCParamValues()).containsEntry("flaky", "flaky");
+        assertThat(evaluations.get()).isEqualTo(5);
+        assertThat(meterRegistry.get(MicrometerMDCMetrics.EXPRESSION_SUSPENSIONS_COUNTER).counter().count()).isEqualTo(1);
+    }
+
+    public static class SuspensionSample {
+        @WithMDC
+        @MDCParam(name = "flaky", eval = "flaky")
+        public void execute() {
+        }
+    }
+
+    public static class MetricsSample {
+        @WithMDC
+        @MDCParam(name = "param1", eval = "constant")
+        @MDCParam(name = "param2", eval = "fail")
+        public void execute(String argument) {
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.github.throwable.mdc4spring.spring;
 
+import com.github.throwable.mdc4spring.spring.cmp.SampleMDCComponent;
 import org.springframework.boot.SpringBootConfiguration;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.context.annotation.ComponentScan;
 
 @SpringBootConfiguration
 @EnableAutoConfiguration
-@ComponentScan
+// Library's configuration must be applied by autoconfiguration only: when scanned, its conditional nested
+// configurations are evaluated before the autoconfigured beans they depend on (e.g. MeterRegistry) exist
+@ComponentScan(basePackageClasses = SampleMDCComponent.class)
 public class SpringBootTestConfiguration {
 }
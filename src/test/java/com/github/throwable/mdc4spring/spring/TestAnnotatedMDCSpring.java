@@ -1,29 +1,59 @@
 package com.github.throwable.mdc4spring.spring;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.github.throwable.mdc4spring.CloseableMDC;
 import com.github.throwable.mdc4spring.InMemoryLoggingEventsAppender;
 import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.spring.actuate.MDCEndpoint;
 import com.github.throwable.mdc4spring.spring.cmp.BeanMDCComponent;
+import com.github.throwable.mdc4spring.spring.cmp.CachedParamsMDCComponent;
 import com.github.throwable.mdc4spring.spring.cmp.SampleMDCComponent;
+import com.github.throwable.mdc4spring.spring.spel.SpelExpressionEvaluator;
+import com.github.throwable.mdc4spring.util.ExpressionEvaluator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
 
 import java.math.BigDecimal;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
 
 @SpringBootTest(
-        properties = "sample.property=Environment property value"
+        properties = {
+                "sample.property=Environment property value",
+                "management.endpoints.web.exposure.include=mdc",
+                "spring.main.web-application-type=none"
+        }
 )
 class TestAnnotatedMDCSpring {
     @Autowired
     SampleMDCComponent sampleMDCComponent;
     @Autowired
     BeanMDCComponent beanMDCComponent;
+    @Autowired
+    CachedParamsMDCComponent cachedParamsMDCComponent;
+    @Autowired
+    MDCEndpoint mdcEndpoint;
+    @Autowired
+    MDCEnablement mdcEnablement;
+    @Autowired
+    MDCRefreshListener mdcRefreshListener;
+    @Autowired
+    ApplicationContext applicationContext;
+    @Autowired
+    ExpressionEvaluator expressionEvaluator;
+    @Autowired
+    ConfigurableEnvironment environment;
 
     @BeforeEach
     public void clearMdc() {
@@ -100,9 +130,8 @@ class TestAnnotatedMDCSpring {
                 .containsEntry("param1", "value1")
                 .containsEntry("param2", "value2");
         assertThat(traces.get(1).getMDCPropertyMap())
-                .as("Current MDC parameters should not be cleared after the method call")
-                .hasSize(2)
-                .containsEntry("param1", "value1")
+                .as("Parameters added by the aspect should be removed, the ones set by the method must remain")
+                .hasSize(1)
                 .containsEntry("param2", "value2");
     }
 
@@ -155,6 +184,23 @@ class TestAnnotatedMDCSpring {
                 .containsEntry("method", "com.github.throwable.mdc4spring.spring.cmp.SampleMDCComponent/execWithMDCParametersReferencingContext");
     }
 
+    @Test
+    void resolvedBeanReferences() {
+        SpelExpressionEvaluator spelExpressionEvaluator = (SpelExpressionEvaluator) expressionEvaluator;
+        sampleMDCComponent.execWithMDCParametersReferencingContext();
+        assertThat(spelExpressionEvaluator.getResolvedBeanNames()).contains("externalParameterBean");
+
+        mdcRefreshListener.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+        assertThat(spelExpressionEvaluator.getResolvedBeanNames()).isEmpty();
+
+        sampleMDCComponent.execWithMDCParametersReferencingContext();
+        assertThat(spelExpressionEvaluator.getResolvedBeanNames()).contains("externalParameterBean");
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(2);
+        assertThat(traces).allSatisfy(trace -> assertThat(trace.getMDCPropertyMap())
+                .containsEntry("externalParameterBeanValue", "Sample external bean value"));
+    }
+
 
     @Test
     void mdcMethodArgumentAsAParameter() {
@@ -185,6 +231,201 @@ class TestAnnotatedMDCSpring {
     }
 
 
+    @Test
+    void summarizedCollections() {
+        LinkedHashMap<String, Integer> map = new LinkedHashMap<>();
+        map.put("first", 1);
+        map.put("second", 2);
+        sampleMDCComponent.execWithSummarizedCollections(
+                Arrays.asList(new BigDecimal("1E+1"), BigDecimal.ONE, BigDecimal.TEN), new byte[1024], map);
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(1);
+        assertThat(traces.get(0).getMDCPropertyMap())
+                .hasSize(4)
+                .containsEntry("list", "[1E+1, 1, ... 1 more]")
+                .containsEntry("bytes", "1024")
+                .containsEntry("map", "[first, second]")
+                .containsEntry("listHead", "[1E+1, ... 2 more]");
+    }
+
+    @Test
+    void failingSummaryElementGetterIsRenderedAsEvaluationError() {
+        sampleMDCComponent.execWithFailingSummaryElements(
+                Collections.singletonList(new SampleMDCComponent.LazyElement()));
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(1);
+        assertThat(traces.get(0).getMDCPropertyMap())
+                .containsEntry("elements", "#EVALUATION ERROR#: could not initialize proxy");
+    }
+
+    @Test
+    void enablementSwitches() {
+        HashMap<String, Object> properties = new HashMap<>();
+        environment.getPropertySources().addFirst(new MapPropertySource("enablementSwitches", properties));
+        try {
+            properties.put(MDCEnablement.EXCLUDE_PACKAGES_PROPERTY, "com.github.throwable.mdc4spring.spring.cmp");
+            properties.put("mdc4spring.beans.sampleMDCComponent.enabled", "true");
+            mdcEnablement.refresh();
+            sampleMDCComponent.execWithSimpleMDC();
+            beanMDCComponent.execWithBeanMDCParams();
+
+            properties.put(MDCEnablement.ENABLED_PROPERTY, "false");
+            mdcEnablement.refresh();
+            // The override does not apply when MDC is disabled globally
+            sampleMDCComponent.execWithConditions("tenant1", "value");
+        } finally {
+            environment.getPropertySources().remove("enablementSwitches");
+            mdcEnablement.refresh();
+        }
+        beanMDCComponent.execWithBeanMDCParams();
+
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(4);
+        assertThat(traces.get(0).getMDCPropertyMap()).containsEntry("sampleKey", "Some Value");
+        assertThat(traces.get(1).getMDCPropertyMap()).isEmpty();
+        assertThat(traces.get(2).getMDCPropertyMap()).isEmpty();
+        assertThat(traces.get(3).getMDCPropertyMap()).hasSize(2);
+    }
+
+    @Test
+    void enablementIsDecidedPerBean() {
+        StandardEnvironment env = new StandardEnvironment();
+        HashMap<String, Object> properties = new HashMap<>();
+        env.getPropertySources().addFirst(new MapPropertySource("enablement", properties));
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean("firstService", EnablementService.class);
+        context.registerBean("secondService", EnablementService.class);
+        context.registerBean("extendedService", ExtendedEnablementService.class);
+        context.refresh();
+        try {
+            Object firstService = context.getBean("firstService");
+            Object secondService = context.getBean("secondService");
+            Object extendedService = context.getBean("extendedService");
+            properties.put("mdc4spring.beans.firstService.enabled", "false");
+            properties.put("mdc4spring.beans.extendedService.enabled", "false");
+            MDCEnablement enablement = new MDCEnablement(env, context);
+            assertThat(enablement.isEnabled(firstService)).isFalse();
+            assertThat(enablement.isEnabled(secondService))
+                    .as("Beans of the same class have their own overrides").isTrue();
+            assertThat(enablement.isEnabled(extendedService)).isFalse();
+
+            properties.remove("mdc4spring.beans.firstService.enabled");
+            properties.put("mdc4spring.beans.extendedService.enabled", "true");
+            properties.put(MDCEnablement.EXCLUDE_PACKAGES_PROPERTY, EnablementService.class.getPackage().getName());
+            enablement.refresh();
+            assertThat(enablement.isEnabled(firstService)).isFalse();
+            assertThat(enablement.isEnabled(secondService)).isFalse();
+            assertThat(enablement.isEnabled(extendedService))
+                    .as("Subclass bean override does not apply to base class beans").isTrue();
+        } finally {
+            context.close();
+        }
+    }
+
+    static class EnablementService {
+    }
+
+    static class ExtendedEnablementService extends EnablementService {
+    }
+
+    @Test
+    void sharedExpressions() {
+        AtomicInteger counter = new AtomicInteger();
+        sampleMDCComponent.execWithSharedExpressions(counter);
+        assertThat(counter).as("Each distinct expression is evaluated once per invocation").hasValue(2);
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(1);
+        assertThat(traces.get(0).getMDCPropertyMap())
+                .hasSize(4)
+                .containsEntry("first", "1")
+                .containsEntry("second", "1")
+                .containsEntry("positive", "true")
+                .containsEntry("conditional", "met");
+
+        String methodId = SampleMDCComponent.class.getName() + "/execWithSharedExpressions";
+        assertThat(mdcEndpoint.mdc().getMethods().get(methodId).get("sharedExpressions"))
+                .asList()
+                .containsExactly("#counter.incrementAndGet()", "#counter.incrementAndGet() > 0");
+    }
+
+    @Test
+    void constantExpressionsFolding() {
+        HashMap<String, Object> properties = new HashMap<>();
+        properties.put("folded.property", "v1");
+        environment.getPropertySources().addFirst(new MapPropertySource("constantExpressionsFolding", properties));
+        try {
+            sampleMDCComponent.execWithConstantExpressions();
+            properties.put("folded.property", "v2");
+            sampleMDCComponent.execWithConstantExpressions();
+            mdcRefreshListener.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+            sampleMDCComponent.execWithConstantExpressions();
+        } finally {
+            environment.getPropertySources().remove("constantExpressionsFolding");
+            mdcRefreshListener.onApplicationEvent(new ContextRefreshedEvent(applicationContext));
+        }
+
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(3);
+        assertThat(traces.get(0).getMDCPropertyMap())
+                .hasSize(3)
+                .containsEntry("folded", "v1")
+                .containsEntry("operation", "execWithConstantExpressions:none")
+                .containsEntry("localFieldParam", "Sample local field value");
+        assertThat(traces.get(1).getMDCPropertyMap())
+                .as("Constant expressions are not evaluated again until the environment is refreshed")
+                .containsEntry("folded", "v1");
+        assertThat(traces.get(2).getMDCPropertyMap()).containsEntry("folded", "v2");
+
+        String methodId = SampleMDCComponent.class.getName() + "/execWithConstantExpressions";
+        assertThat(mdcEndpoint.mdc().getMethods().get(methodId).get("constantExpressions"))
+                .asList()
+                .containsExactly("#environment['folded.property']",
+                        "#methodName + ':' + (#systemProperties['folded.missing'] ?: 'none')");
+    }
+
+    @Test
+    void conditionalScopeAndParams() {
+        sampleMDCComponent.execWithConditions("skip", "value");
+        sampleMDCComponent.execWithConditions("tenant1", null);
+        sampleMDCComponent.execWithConditions("other", "value");
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(3);
+        assertThat(traces.get(0).getMDCPropertyMap()).isEmpty();
+        assertThat(traces.get(1).getMDCPropertyMap())
+                .hasSize(2)
+                .containsEntry("tenant", "tenant1")
+                .containsEntry("tenantUpper", "TENANT1");
+        assertThat(traces.get(2).getMDCPropertyMap())
+                .hasSize(2)
+                .containsEntry("tenant", "other")
+                .containsEntry("optional", "value");
+    }
+
+    @Test
+    void sampledParams() {
+        for (int i = 0; i < 20; i++) {
+            InMemoryLoggingEventsAppender.clearLoggingEvents();
+            boolean sampled = MDC.isSampled(0.5);
+            try (CloseableMDC ignored = MDC.create()) {
+                // The decision taken before the root MDC was created is kept for the whole execution flow
+                assertThat(MDC.isSampled(0.5)).isEqualTo(sampled);
+                sampleMDCComponent.execWithSampledParams("value");
+                sampleMDCComponent.execWithSampledParams("value");
+            }
+            List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+            assertThat(traces).hasSize(2);
+            for (ILoggingEvent trace : traces) {
+                assertThat(trace.getMDCPropertyMap())
+                        .containsEntry("alwaysSampled", "value")
+                        .doesNotContainKey("neverSampled");
+                if (sampled)
+                    assertThat(trace.getMDCPropertyMap()).containsEntry("halfSampled", "half");
+                else
+                    assertThat(trace.getMDCPropertyMap()).doesNotContainKey("halfSampled");
+            }
+        }
+    }
+
     @Test
     void beanMDCParamsMethodCall() {
         beanMDCComponent.execWithBeanMDCParams();
@@ -197,6 +438,27 @@ class TestAnnotatedMDCSpring {
     }
 
 
+    @Test
+    void cachedBeanParams() {
+        cachedParamsMDCComponent.execWithCachedBeanParams();
+        cachedParamsMDCComponent.execWithCachedBeanParams();
+        cachedParamsMDCComponent.execWithCachedBeanParams();
+        List<ILoggingEvent> traces = InMemoryLoggingEventsAppender.getLoggingEvents();
+        assertThat(traces).hasSize(3);
+        assertThat(traces.get(0).getMDCPropertyMap())
+                .containsEntry("uncached", "1")
+                .containsEntry("instance", "1")
+                .containsEntry("ttl", "1");
+        assertThat(traces.get(1).getMDCPropertyMap())
+                .containsEntry("uncached", "2")
+                .containsEntry("instance", "1")
+                .containsEntry("ttl", "1");
+        assertThat(traces.get(2).getMDCPropertyMap())
+                .containsEntry("uncached", "3")
+                .containsEntry("instance", "1")
+                .containsEntry("ttl", "1");
+    }
+
     @Test
     void beanMDCWithArgumentsAsParams() {
         beanMDCComponent.execWithBeanMDCAndArgumentsAsParams("Value 1", "Value 2");
@@ -321,4 +583,25 @@ class TestAnnotatedMDCSpring {
                 .containsEntry("returnUnnamedOutParams.1", "NoName-1")
                 .containsEntry("named", "NoName-2");
     }
+
+    @Test
+    void mdcEndpoint() {
+        sampleMDCComponent.execWithFixedMDCParameters();
+        MDCEndpoint.MDCDescriptor descriptor = mdcEndpoint.mdc();
+        assertThat(descriptor.getBeans())
+                .containsKey("sampleMDCComponent")
+                .containsKey("beanMDCComponent");
+        String methodId = SampleMDCComponent.class.getName() + "/execWithFixedMDCParameters";
+        assertThat(descriptor.getMethods()).containsKey(methodId);
+        assertThat(descriptor.getExpressions()).contains("'Number ' + 5");
+        assertThat(descriptor.getTimings()).as("Metrics must be enabled with MeterRegistry present").isNotNull();
+
+        mdcEndpoint.clearCaches();
+        assertThat(mdcEndpoint.mdc().getMethods()).isEmpty();
+        assertThat(mdcEndpoint.mdc().getExpressions()).isEmpty();
+
+        assertThat(mdcEndpoint.rewarm().get("warmedMethods")).isPositive();
+        assertThat(mdcEndpoint.mdc().getMethods()).containsKey(methodId);
+        assertThat(mdcEndpoint.mdc().getExpressions()).contains("'Number ' + 5");
+    }
 }
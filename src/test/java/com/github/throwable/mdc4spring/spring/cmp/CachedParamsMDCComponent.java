@@ -0,0 +1,37 @@
+package com.github.throwable.mdc4spring.spring.cmp;
+
+import com.github.throwable.mdc4spring.anno.CachePolicy;
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.anno.WithMDC;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+@Service
+@WithMDC
+@MDCParam(name = "uncached", eval = "nextUncached()")
+@MDCParam(name = "instance", eval = "nextInstance()", cache = CachePolicy.INSTANCE)
+@MDCParam(name = "ttl", eval = "nextTtl()", cache = CachePolicy.TTL, cacheTtlMillis = 60_000)
+@SuppressWarnings("unused")
+public class CachedParamsMDCComponent {
+    private final static Logger log = LoggerFactory.getLogger(CachedParamsMDCComponent.class);
+    private int uncached;
+    private int instance;
+    private int ttl;
+
+    public int nextUncached() {
+        return ++uncached;
+    }
+
+    public int nextInstance() {
+        return ++instance;
+    }
+
+    public int nextTtl() {
+        return ++ttl;
+    }
+
+    public void execWithCachedBeanParams() {
+        log.info("Cached bean params");
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.throwable.mdc4spring.spring.cmp;
 
+import com.github.throwable.mdc4spring.anno.CollectionSummary;
 import com.github.throwable.mdc4spring.anno.MDCParam;
 import com.github.throwable.mdc4spring.anno.MDCOutParam;
 import com.github.throwable.mdc4spring.anno.WithMDC;
@@ -9,6 +10,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.throwable.mdc4spring.MDC.current;
 
@@ -102,6 +106,53 @@ public class SampleMDCComponent {
         log.info("Argument as MDC parameter");
     }
 
+    @WithMDC
+    @MDCParam(name = "listHead", eval = "#list", summary = CollectionSummary.FIRST, maxElements = 1)
+    public void execWithSummarizedCollections(
+            @MDCParam(summary = CollectionSummary.FIRST, maxElements = 2) List<BigDecimal> list,
+            @MDCParam(summary = CollectionSummary.SIZE) byte[] bytes,
+            @MDCParam(summary = CollectionSummary.FIRST, elementProperty = "key") Map<String, Integer> map)
+    {
+        log.info("Summarized collections");
+    }
+
+    @WithMDC
+    public void execWithFailingSummaryElements(
+            @MDCParam(summary = CollectionSummary.FIRST, elementProperty = "id") List<LazyElement> elements)
+    {
+        log.info("Failing summary elements");
+    }
+
+    @WithMDC(condition = "#tenant != 'skip'")
+    @MDCParam(name = "tenantUpper", eval = "#tenant.toUpperCase()", condition = "#tenant.startsWith('t')")
+    public void execWithConditions(@MDCParam String tenant, @MDCParam(condition = "#this != null") String optional) {
+        log.info("Conditional params");
+    }
+
+    @WithMDC
+    @MDCParam(name = "first", eval = "#counter.incrementAndGet()")
+    @MDCParam(name = "second", eval = "#counter.incrementAndGet()")
+    @MDCParam(name = "positive", eval = "#counter.incrementAndGet() > 0")
+    @MDCParam(name = "conditional", eval = "'met'", condition = "#counter.incrementAndGet() > 0")
+    public void execWithSharedExpressions(AtomicInteger counter) {
+        log.info("Shared expressions");
+    }
+
+    @WithMDC
+    @MDCParam(name = "folded", eval = "#environment['folded.property']")
+    @MDCParam(name = "operation", eval = "#methodName + ':' + (#systemProperties['folded.missing'] ?: 'none')")
+    @MDCParam(name = "localFieldParam", eval = "sampleFieldValue")
+    public void execWithConstantExpressions() {
+        log.info("Constant expressions");
+    }
+
+    @WithMDC
+    @MDCParam(name = "neverSampled", eval = "'never'", sampleRate = 0)
+    @MDCParam(name = "halfSampled", eval = "'half'", sampleRate = 0.5)
+    public void execWithSampledParams(@MDCParam(sampleRate = 1) String alwaysSampled) {
+        log.info("Sampled params");
+    }
+
     @WithMDC
     @MDCParam(name = "concatAllArgumentsParam", eval = "#param1 + #param2 + #param3 + #clazz + #notIncluded")
     public void execWithMethodArgumentsAsMDCParameters(@MDCParam String param1,
@@ -189,4 +240,10 @@ public class SampleMDCComponent {
         nestedMDCComponent.returnUnnamedOutParams();
         log.info("unnamed out params");
     }
+
+    public static class LazyElement {
+        public String getId() {
+            throw new IllegalStateException("could not initialize proxy");
+        }
+    }
 }
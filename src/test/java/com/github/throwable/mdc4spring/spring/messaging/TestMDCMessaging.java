@@ -0,0 +1,152 @@
+package com.github.throwable.mdc4spring.spring.messaging;
+
+import com.github.throwable.mdc4spring.MDC;
+import com.github.throwable.mdc4spring.MDCLimits;
+import com.github.throwable.mdc4spring.anno.MDCParam;
+import com.github.throwable.mdc4spring.anno.WithMDC;
+import com.github.throwable.mdc4spring.format.MDCValueFormatters;
+import com.github.throwable.mdc4spring.util.AnnotatedMethodMDCParamsEvaluator;
+import com.github.throwable.mdc4spring.util.MethodInvocationMDCParametersValues;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMDCMessaging {
+
+    @SuppressWarnings("unused")
+    static class SampleListener {
+        @WithMDC
+        public void onMessage(@MDCParam Message<String> message, @MDCParam("consumer") String consumer) {
+        }
+    }
+
+    private static MDCMessagingProperties properties() {
+        MDCMessagingProperties properties = new MDCMessagingProperties();
+        properties.getHeaders().put("x-correlation-id", "correlationId");
+        properties.setHeaderPrefix("mdc.");
+        return properties;
+    }
+
+    @Test
+    public void messageArgumentHeadersAreExtracted() throws Exception {
+        AnnotatedMethodMDCParamsEvaluator evaluator = new AnnotatedMethodMDCParamsEvaluator(
+                m -> new String[] {"message", "consumer"},
+                (expression, root, argumentValues, variables) -> {
+                    throw new AssertionError("No expression must be evaluated");
+                },
+                Collections.singletonList(new MessageMDCParamsExtractor(properties())));
+        Method method = SampleListener.class.getMethod("onMessage", Message.class, String.class);
+        Message<String> message = MessageBuilder.withPayload("payload")
+                .setHeader("x-correlation-id", "corr1")
+                .setHeader("mdc.tenant", "tenant1".getBytes(StandardCharsets.UTF_8))
+                .setHeader("other", "ignored")
+                .build();
+
+        MethodInvocationMDCParametersValues values = evaluator.evalMethodInvocationMDCParamValues(
+                method, new SampleListener(), new Object[] {message, "consumer1"});
+
+        assertThat(values).isNotNull();
+        assertThat(values.getMethodMDCParamValues())
+                .hasSize(4)
+                .containsEntry("message", message)
+                .containsEntry("correlationId", "corr1")
+                .containsEntry("tenant", "tenant1")
+                .containsEntry("consumer", "consumer1");
+    }
+
+    @Test
+    public void onlyMappedHeadersAreExtractedByDefault() {
+        MDCMessagingProperties properties = new MDCMessagingProperties();
+        properties.getHeaders().put("x-correlation-id", "correlationId");
+        Message<String> message = MessageBuilder.withPayload("payload")
+                .setHeader("x-correlation-id", "corr1")
+                .setHeader("mdc.tenant", "tenant1")
+                .build();
+        Map<String, Object> extracted = new HashMap<>();
+        new MessageMDCParamsExtractor(properties).extract(message, extracted);
+        assertThat(extracted)
+                .hasSize(1)
+                .containsEntry("correlationId", "corr1");
+    }
+
+    @Test
+    public void extractorsAreResolvedPerEvaluator() throws Exception {
+        Method method = SampleListener.class.getMethod("onMessage", Message.class, String.class);
+        Message<String> message = MessageBuilder.withPayload("payload").setHeader("x-correlation-id", "corr1").build();
+        AnnotatedMethodMDCParamsEvaluator withExtractor = new AnnotatedMethodMDCParamsEvaluator(
+                m -> new String[] {"message", "consumer"}, (expression, root, argumentValues, variables) -> null,
+                Collections.singletonList(new MessageMDCParamsExtractor(properties())));
+        AnnotatedMethodMDCParamsEvaluator withoutExtractor = new AnnotatedMethodMDCParamsEvaluator(
+                m -> new String[] {"message", "consumer"}, (expression, root, argumentValues, variables) -> null);
+
+        MethodInvocationMDCParametersValues extracted = withExtractor.evalMethodInvocationMDCParamValues(
+                method, new SampleListener(), new Object[] {message, "consumer1"});
+        MethodInvocationMDCParametersValues notExtracted = withoutExtractor.evalMethodInvocationMDCParamValues(
+                method, new SampleListener(), new Object[] {message, "consumer1"});
+
+        assertThat(extracted).isNotNull();
+        assertThat(extracted.getMethodMDCParamValues()).containsEntry("correlationId", "corr1");
+        assertThat(notExtracted).isNotNull();
+        assertThat(notExtracted.getMethodMDCParamValues())
+                .hasSize(2)
+                .containsEntry("message", message);
+    }
+
+    @Test
+    public void currentMDCIsPropagatedToOutgoingMessage() {
+        MDCMessageHeadersPropagator propagator = new MDCMessageHeadersPropagator(properties());
+        Message<String> message = MessageBuilder.withPayload("payload").build();
+        assertThat(propagator.postProcessMessage(message)).isSameAs(message);
+
+        MDC.with().param("correlationId", "corr1").run(() ->
+            MDC.with("component").param("tenant", "tenant1").run(() -> {
+                Message<?> outgoing = propagator.postProcessMessage(
+                        MessageBuilder.withPayload("payload").setHeader("mdc.component.tenant", "keep").build());
+                assertThat(outgoing.getHeaders())
+                        .containsEntry("x-correlation-id", "corr1")
+                        .containsEntry("mdc.component.tenant", "keep");
+
+                Map<String, Object> extracted = new HashMap<>();
+                new MessageMDCParamsExtractor(properties()).extract(
+                        propagator.postProcessMessage(MessageBuilder.withPayload("payload").build()), extracted);
+                assertThat(extracted)
+                        .containsEntry("correlationId", "corr1")
+                        .containsEntry("component.tenant", "tenant1");
+            }));
+    }
+
+    @Test
+    public void publishedValuesArePropagatedToOutgoingMessage() {
+        MDCMessageHeadersPropagator propagator = new MDCMessageHeadersPropagator(properties());
+        MDCLimits originalLimits = MDC.getLimits();
+        MDC.setLimits(new MDCLimits(8, 0, 0));
+        MDCValueFormatters.register(Amount.class, amount -> amount.cents / 100 + "." + amount.cents % 100);
+        try {
+            MDC.with().param("correlationId", "1234567890").param("amount", new Amount(1250)).run(() -> {
+                Message<?> outgoing = propagator.postProcessMessage(MessageBuilder.withPayload("payload").build());
+                assertThat(outgoing.getHeaders())
+                        .containsEntry("x-correlation-id", "12345678" + MDCLimits.TRUNCATION_MARKER)
+                        .containsEntry("mdc.amount", "12.50");
+            });
+        } finally {
+            MDCValueFormatters.unregister(Amount.class);
+            MDC.setLimits(originalLimits);
+        }
+    }
+
+    static class Amount {
+        final int cents;
+
+        Amount(int cents) {
+            this.cents = cents;
+        }
+    }
+}
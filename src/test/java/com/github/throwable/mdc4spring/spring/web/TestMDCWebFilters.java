@@ -0,0 +1,123 @@
+package com.github.throwable.mdc4spring.spring.web;
+
+import com.github.throwable.mdc4spring.MDC;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMDCWebFilters {
+
+    private static MDCWebProperties properties() {
+        MDCWebProperties properties = new MDCWebProperties();
+        properties.getHeaders().put("X-Tenant-Id", "tenant");
+        properties.setPathKey("");
+        return properties;
+    }
+
+    @Test
+    public void servletFilterOpensRequestScope() throws Exception {
+        MDCRequestFilter filter = new MDCRequestFilter(properties());
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Tenant-Id", "tenant1");
+        HashMap<String, Object> captured = new HashMap<>();
+        FilterChain chain = (req, res) -> captureMDC(captured, "requestId", "sourceIp", "method", "path", "tenant");
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(MDC.hasCurrent()).as("Request MDC must be closed").isFalse();
+        assertThat(captured)
+                .containsEntry("sourceIp", "10.0.0.1")
+                .containsEntry("method", "POST")
+                .containsEntry("tenant", "tenant1")
+                .containsEntry("path", null);
+        assertThat((String) captured.get("requestId")).hasSize(16);
+
+        // Async dispatch of the same request must reopen MDC with the same request id
+        request.setDispatcherType(DispatcherType.ASYNC);
+        HashMap<String, Object> capturedAsync = new HashMap<>();
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> captureMDC(capturedAsync, "requestId"));
+        assertThat(MDC.hasCurrent()).isFalse();
+        assertThat(capturedAsync).containsEntry("requestId", captured.get("requestId"));
+    }
+
+    @Test
+    public void servletFilterTakesRequestIdFromHeader() throws Exception {
+        MDCRequestFilter filter = new MDCRequestFilter(properties());
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        request.addHeader("X-Request-Id", "incoming-id");
+        HashMap<String, Object> captured = new HashMap<>();
+
+        filter.doFilter(request, new MockHttpServletResponse(),
+                (req, res) -> captureMDC(captured, "requestId", "tenant"));
+
+        assertThat(captured)
+                .containsEntry("requestId", "incoming-id")
+                .containsEntry("tenant", null);
+    }
+
+    @Test
+    public void webFilterOpensRequestScope() {
+        MDCWebFilter filter = new MDCWebFilter(properties());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders/1")
+                .header("X-Request-Id", "incoming-id")
+                .header("X-Tenant-Id", "tenant1")
+                .remoteAddress(new InetSocketAddress("10.0.0.2", 8080)));
+        HashMap<String, Object> captured = new HashMap<>();
+        HashMap<String, Object> contextParams = new HashMap<>();
+        WebFilterChain chain = ex -> Mono.deferContextual(context -> {
+            contextParams.putAll(context.get(MDCWebFilter.MDC_PARAMS_KEY));
+            return Mono.<Void>empty();
+        }).doFirst(() -> captureMDC(captured, "requestId", "sourceIp", "method", "tenant"));
+
+        filter.filter(exchange, chain).block();
+
+        assertThat(MDC.hasCurrent()).isFalse();
+        assertThat(captured)
+                .containsEntry("requestId", "incoming-id")
+                .containsEntry("sourceIp", "10.0.0.2")
+                .containsEntry("method", "GET")
+                .containsEntry("tenant", "tenant1");
+        assertThat(contextParams).isEqualTo(captured);
+        assertThat((Map<?, ?>) exchange.getAttribute(MDCWebFilter.MDC_PARAMS_KEY)).isEqualTo(captured);
+    }
+
+    @Test
+    public void webFilterSignalsChainFailureAsError() {
+        MDCWebFilter filter = new MDCWebFilter(properties());
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/orders/1"));
+        HashMap<String, Object> captured = new HashMap<>();
+        WebFilterChain chain = ex -> {
+            captureMDC(captured, "method");
+            throw new IllegalStateException("Handler failed");
+        };
+        AtomicReference<Throwable> error = new AtomicReference<>();
+
+        filter.filter(exchange, chain).subscribe(null, error::set);
+
+        assertThat(MDC.hasCurrent()).isFalse();
+        assertThat(captured).containsEntry("method", "GET");
+        assertThat(error.get())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("Handler failed");
+    }
+
+    private static void captureMDC(Map<String, Object> captured, String... keys) {
+        for (String key : keys)
+            captured.put(key, MDC.current().get(key));
+    }
+}